@@ -0,0 +1,106 @@
+#!/bin/bash
+
+# Checks that the history service migrates an appointment_history table created before
+# partitioning: a plain table as ddl-auto used to create it, with rows, is turned into the
+# range-partitioned table with the same rows, and a second start leaves it as it is.
+#
+# Usage: ./history-migration-check.sh
+#
+# Needs the PostgreSQL container (./start-infrastructure.sh) and the history jar (mvn package in
+# history-service). Works on a scratch database of its own, dropped at the end; RabbitMQ is not
+# needed, the service only has to get past the schema script and the partition maintenance.
+
+ROOT="$(cd "$(dirname "$0")" && pwd)"
+JAR="$ROOT/history-service/target/history-service-1.0.0.jar"
+DATABASE=history_migration_check
+TIMEOUT_SECONDS=120
+ARGS=(--management.tracing.enabled=false
+      --spring.datasource.url=jdbc:postgresql://localhost:5432/$DATABASE
+      --spring.rabbitmq.listener.simple.auto-startup=false)
+
+if [ ! -f "$JAR" ]; then
+    echo "❌ $JAR not found, build it first"
+    exit 1
+fi
+
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+
+psql() {
+    docker exec -i hospital-postgres psql -U hospital_user -d "${PSQL_DATABASE:-$DATABASE}" -v ON_ERROR_STOP=1 -qtA "$@"
+}
+
+PSQL_DATABASE=hospital_db psql -c "DROP DATABASE IF EXISTS $DATABASE" -c "CREATE DATABASE $DATABASE" || exit 1
+
+# The table as ddl-auto created it from the entity before partitioning, with one row this month
+# (moved into its monthly partition by the maintenance) and one far outside the maintained range
+psql <<'SQL' || exit 1
+CREATE TABLE appointment_history (
+    id BIGINT NOT NULL PRIMARY KEY,
+    patient_id BIGINT NOT NULL,
+    patient_name VARCHAR(255) NOT NULL,
+    patient_email VARCHAR(255) NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    doctor_name VARCHAR(255) NOT NULL,
+    appointment_date TIMESTAMP(6) NOT NULL,
+    notes VARCHAR(500),
+    status VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
+INSERT INTO appointment_history VALUES
+    (1, 10, 'Paciente 10', 'p10@example.com', 2, 'Dr. Dois', now(), 'este mês', 'SCHEDULED', now(), now()),
+    (2, 11, 'Paciente 11', 'p11@example.com', 3, 'Dr. Três', '2001-01-01', NULL, 'CANCELLED', now(), now());
+SQL
+
+start() {
+    java -jar "$JAR" "${ARGS[@]}" > "$LOG" 2>&1 &
+    local pid=$!
+    local deadline=$((SECONDS + TIMEOUT_SECONDS))
+    until grep -q "Started HistoryServiceApplication" "$LOG"; do
+        if [ $SECONDS -ge $deadline ] || ! kill -0 $pid 2> /dev/null; then
+            echo "❌ history-service did not start, last log lines:"
+            tail -20 "$LOG"
+            kill $pid 2> /dev/null
+            exit 1
+        fi
+        sleep 0.5
+    done
+    # The partition maintenance runs right after startup
+    sleep 2
+    kill $pid
+    wait $pid 2> /dev/null
+}
+
+check() {
+    local label=$1
+    expect "$label: partitioned" "p" "SELECT relkind FROM pg_class WHERE oid = 'appointment_history'::regclass"
+    expect "$label: rows" "2" "SELECT count(*) FROM appointment_history"
+    expect "$label: key rows" "2" "SELECT count(*) FROM appointment_history_key"
+    expect "$label: old table gone" "" "SELECT to_regclass('appointment_history_unpartitioned')"
+    expect "$label: stats backfilled" "2" "SELECT sum(appointment_count) FROM appointment_stats"
+    expect "$label: row of this month in its partition" "1" \
+        "SELECT count(*) FROM appointment_history_p$(date +%Y_%m)"
+}
+
+expect() {
+    local label=$1 expected=$2 actual
+    actual=$(psql -c "$3" 2>&1)
+    if [ "$actual" = "$expected" ]; then
+        echo "   ✅ $label"
+    else
+        echo "   ❌ $label: expected '$expected', got '$actual'"
+        FAILED=1
+    fi
+}
+
+FAILED=0
+echo "🔧 first start on a pre-partitioning table"
+start
+check "first start"
+echo "🔧 second start"
+start
+check "second start"
+
+PSQL_DATABASE=hospital_db psql -c "DROP DATABASE $DATABASE"
+exit $FAILED
@@ -1,9 +1,14 @@
 package com.hospital.history;
 
+import com.hospital.history.config.HistoryRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(HistoryRuntimeHints.class)
 public class HistoryServiceApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,67 @@
+package com.hospital.history.config;
+
+import com.hospital.history.graphql.CachingPreparsedDocumentProvider;
+import com.hospital.history.graphql.CostDirectiveComplexityCalculator;
+import com.hospital.history.graphql.QueryMetricsInstrumentation;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class GraphQlConfig {
+    
+    @Value("${history.graphql.max-depth:6}")
+    private int maxDepth;
+    
+    @Value("${history.graphql.max-complexity:12000}")
+    private int maxComplexity;
+    
+    @Value("${history.graphql.max-page-size:1000}")
+    private int maxPageSize;
+    
+    @Value("${history.graphql.metrics.known-operations:}")
+    private List<String> knownOperations;
+    
+    @Value("${history.graphql.metrics.max-operations:100}")
+    private int maxOperations;
+    
+    @Value("${history.graphql.document-cache-size:500}")
+    private int documentCacheSize;
+    
+    @Bean
+    public CachingPreparsedDocumentProvider preparsedDocumentProvider() {
+        return new CachingPreparsedDocumentProvider(documentCacheSize);
+    }
+    
+    @Bean
+    public GraphQlSourceBuilderCustomizer preparsedDocumentCustomizer(CachingPreparsedDocumentProvider provider) {
+        return builder -> builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(provider));
+    }
+    
+    @Bean
+    public MaxQueryDepthInstrumentation maxQueryDepthInstrumentation() {
+        return new MaxQueryDepthInstrumentation(maxDepth);
+    }
+    
+    @Bean
+    public MaxQueryComplexityInstrumentation maxQueryComplexityInstrumentation() {
+        return new MaxQueryComplexityInstrumentation(maxComplexity, new CostDirectiveComplexityCalculator(maxPageSize));
+    }
+    
+    @Bean
+    public QueryMetricsInstrumentation queryMetricsInstrumentation(MeterRegistry meterRegistry) {
+        return new QueryMetricsInstrumentation(meterRegistry, knownOperations, maxOperations);
+    }
+    
+    @Bean
+    public MeterBinder documentCacheMetrics(CachingPreparsedDocumentProvider provider) {
+        return registry -> registry.gauge("graphql.document.cache.size", provider, CachingPreparsedDocumentProvider::size);
+    }
+}
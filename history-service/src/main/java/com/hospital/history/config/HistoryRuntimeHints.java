@@ -0,0 +1,30 @@
+package com.hospital.history.config;
+
+import com.hospital.history.event.AppointmentEvent;
+import com.hospital.history.logging.RepeatedMessageFilter;
+import net.logstash.logback.appender.LoggingEventAsyncDisruptorAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// Native image hints for what the AOT engine cannot see. Entities, GraphQL and MVC types are
+// covered by Spring; Lombok only generates code at compile time and needs nothing.
+public class HistoryRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // AMQP payload, bound by the Jackson message converter
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), AppointmentEvent.class);
+        
+        // Created and configured through setters by logback-spring.xml
+        hints.reflection()
+                .registerType(RepeatedMessageFilter.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LoggingEventAsyncDisruptorAppender.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LogstashEncoder.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+}
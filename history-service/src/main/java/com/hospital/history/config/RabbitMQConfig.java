@@ -1,15 +1,57 @@
 package com.hospital.history.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.history.listener.ListenerConcurrencyController;
+import org.slf4j.MDC;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMQConfig {
     
+    public static final String CORRELATION_ID_HEADER = "X-Correlation-Id";
+    public static final String CORRELATION_ID_MDC_KEY = "correlationId";
+    
+    @Value("${rabbitmq.queue.created-urgent}")
+    private String createdUrgentQueue;
+    
+    @Value("${rabbitmq.queue.updated-urgent}")
+    private String updatedUrgentQueue;
+    
+    @Value("${rabbitmq.listener.adaptive.urgent-weight:4}")
+    private int urgentWeight;
+    
+    // The application's ObjectMapper: ISO-8601 dates and the Blackbird module
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+    
     @Bean
-    public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public ContainerCustomizer<SimpleMessageListenerContainer> listenerContainerCustomizer(
+            ListenerConcurrencyController concurrencyController) {
+        return container -> {
+            // Consumers and prefetch are sized at runtime, urgent lanes get the larger share
+            String queue = container.getQueueNames()[0];
+            boolean urgent = queue.equals(createdUrgentQueue) || queue.equals(updatedUrgentQueue);
+            concurrencyController.register(container, urgent ? urgentWeight : 1);
+            // Continues the publisher's trace from the message headers
+            container.setObservationEnabled(true);
+            // Each delivery replaces the previous message's correlation id on the consumer thread
+            container.setAfterReceivePostProcessors(message -> {
+                Object correlationId = message.getMessageProperties().getHeader(CORRELATION_ID_HEADER);
+                if (correlationId != null) {
+                    MDC.put(CORRELATION_ID_MDC_KEY, correlationId.toString());
+                } else {
+                    MDC.remove(CORRELATION_ID_MDC_KEY);
+                }
+                return message;
+            });
+        };
     }
 }
@@ -0,0 +1,102 @@
+package com.hospital.history.config;
+
+import com.hospital.history.datasource.ReadReplicaAwareTransactionManager;
+import com.hospital.history.datasource.ReadReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces the auto-configured DataSource when read replicas are enabled. Replicas share the
+// primary's credentials and Hikari settings, with their own pool size.
+@Configuration
+@ConditionalOnProperty(prefix = "history.read-replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+    
+    @Value("${history.read-replicas.urls}")
+    private String[] replicaUrls;
+    
+    @Value("${history.read-replicas.pool-size:10}")
+    private int replicaPoolSize;
+    
+    @Value("${history.read-replicas.max-lag-ms:10000}")
+    private long maxLagMs;
+    
+    private ReadReplicaRoutingDataSource routingDataSource;
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource primary = hikari(properties, environment, properties.determineUrl());
+        primary.setPoolName("primary");
+        
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            HikariDataSource replica = hikari(properties, environment, replicaUrls[i].trim());
+            replica.setPoolName("replica-" + i);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            if (replica.getMinimumIdle() > replicaPoolSize) {
+                replica.setMinimumIdle(replicaPoolSize);
+            }
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        
+        // History is written only by the event listeners, so there is no user session to keep on the primary
+        routingDataSource = new ReadReplicaRoutingDataSource(primary, replicas, () -> null, 0, maxLagMs);
+        return routingDataSource;
+    }
+    
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new ReadReplicaAwareTransactionManager(entityManagerFactory);
+    }
+    
+    // Spring otherwise holds the connection for the whole EntityManager, so with open-in-view a
+    // request's later write transactions would reuse the replica connection of an earlier read
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+    
+    @Scheduled(fixedDelayString = "${history.read-replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+    
+    private static HikariDataSource hikari(DataSourceProperties properties, Environment environment, String url) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+}
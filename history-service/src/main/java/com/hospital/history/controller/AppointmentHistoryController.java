@@ -3,9 +3,13 @@ package com.hospital.history.controller;
 import com.hospital.history.entity.AppointmentHistory;
 import com.hospital.history.repository.AppointmentHistoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,25 +18,52 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AppointmentHistoryController {
     
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1900, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59);
+    
     private final AppointmentHistoryRepository repository;
     
+    @Value("${history.graphql.max-page-size:1000}")
+    private int maxPageSize;
+    
     @QueryMapping
-    public List<AppointmentHistory> patientAppointments(@Argument Long patientId) {
-        return repository.findByPatientId(patientId);
+    @Transactional(readOnly = true)
+    public List<AppointmentHistory> patientAppointments(@Argument Long patientId,
+                                                        @Argument String from,
+                                                        @Argument String to) {
+        if (from == null && to == null) {
+            return repository.findByPatientId(patientId);
+        }
+        // Bounding the date lets PostgreSQL prune appointment_history partitions
+        return repository.findByPatientIdAndAppointmentDateBetween(
+                patientId, parseOrDefault(from, MIN_DATE), parseOrDefault(to, MAX_DATE));
     }
     
     @QueryMapping
+    @Transactional(readOnly = true)
     public List<AppointmentHistory> futureAppointments(@Argument Long patientId) {
         return repository.findByPatientIdAndAppointmentDateGreaterThan(patientId, LocalDateTime.now());
     }
     
     @QueryMapping
+    @Transactional(readOnly = true)
     public AppointmentHistory appointment(@Argument Long id) {
-        return repository.findById(id).orElse(null);
+        return repository.findByKey(id).orElse(null);
     }
     
     @QueryMapping
-    public List<AppointmentHistory> allAppointments() {
-        return repository.findAll();
+    @Transactional(readOnly = true)
+    public List<AppointmentHistory> allAppointments(@Argument String from, @Argument String to, @Argument Integer limit) {
+        int size = Math.min(limit != null ? limit : maxPageSize, maxPageSize);
+        PageRequest page = PageRequest.of(0, Math.max(size, 1), Sort.by(Sort.Direction.DESC, "appointmentDate"));
+        
+        if (from == null && to == null) {
+            return repository.findAllBy(page);
+        }
+        return repository.findByAppointmentDateBetween(parseOrDefault(from, MIN_DATE), parseOrDefault(to, MAX_DATE), page);
+    }
+    
+    private static LocalDateTime parseOrDefault(String value, LocalDateTime defaultValue) {
+        return value != null ? LocalDateTime.parse(value) : defaultValue;
     }
 }
@@ -0,0 +1,69 @@
+package com.hospital.history.controller;
+
+import com.hospital.history.entity.AppointmentStatistic;
+import com.hospital.history.repository.AppointmentStatisticRepository;
+import com.hospital.history.stats.DailyStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Controller
+@RequiredArgsConstructor
+public class AppointmentStatsController {
+    
+    private final AppointmentStatisticRepository repository;
+    
+    @QueryMapping
+    @Transactional(readOnly = true)
+    public List<DailyStats> stats(@Argument Long doctorId, @Argument String from, @Argument String to) {
+        LocalDate fromDay = LocalDate.parse(from);
+        LocalDate toDay = LocalDate.parse(to);
+        
+        List<AppointmentStatistic> rows = doctorId != null
+                ? repository.findByIdDoctorIdAndIdDayBetweenOrderByIdDay(doctorId, fromDay, toDay)
+                : repository.findByIdDayBetweenOrderByIdDay(fromDay, toDay);
+        
+        // One row per doctor/day/status in the table; pivot to one entry per doctor/day
+        Map<DoctorDay, Map<String, Long>> grouped = new LinkedHashMap<>();
+        for (AppointmentStatistic row : rows) {
+            grouped.computeIfAbsent(new DoctorDay(row.getId().getDoctorId(), row.getId().getDay()), k -> new HashMap<>())
+                    .merge(row.getId().getStatus(), row.getAppointmentCount(), Long::sum);
+        }
+        
+        List<DailyStats> result = new ArrayList<>(grouped.size());
+        grouped.forEach((key, counts) -> {
+            long scheduled = counts.getOrDefault("SCHEDULED", 0L);
+            long completed = counts.getOrDefault("COMPLETED", 0L);
+            long cancelled = counts.getOrDefault("CANCELLED", 0L);
+            long noShow = counts.getOrDefault("NO_SHOW", 0L);
+            long total = scheduled + completed + cancelled + noShow;
+            result.add(new DailyStats(
+                    key.doctorId(),
+                    key.day().toString(),
+                    scheduled,
+                    completed,
+                    cancelled,
+                    noShow,
+                    total,
+                    rate(noShow, completed + noShow),
+                    rate(cancelled, total)
+            ));
+        });
+        return result;
+    }
+    
+    private static double rate(long count, long total) {
+        return total == 0 ? 0.0 : (double) count / total;
+    }
+    
+    private record DoctorDay(Long doctorId, LocalDate day) {}
+}
@@ -0,0 +1,34 @@
+package com.hospital.history.datasource;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+// Tells ReadReplicaRoutingDataSource whether a transaction is read-only before the connection
+// is acquired in doBegin; TransactionSynchronizationManager only knows after that.
+public class ReadReplicaAwareTransactionManager extends JpaTransactionManager {
+    
+    public ReadReplicaAwareTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+    
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReadReplicaRoutingDataSource.beginTransaction(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            ReadReplicaRoutingDataSource.endTransaction();
+            throw e;
+        }
+    }
+    
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            ReadReplicaRoutingDataSource.endTransaction();
+        }
+    }
+}
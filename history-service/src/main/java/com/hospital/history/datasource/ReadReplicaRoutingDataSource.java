@@ -0,0 +1,149 @@
+package com.hospital.history.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Sends read-only transactions round-robin to healthy replicas and everything else to the
+// primary. A session that wrote within readAfterWriteMs keeps reading from the primary so it
+// sees its own writes. ReadReplicaAwareTransactionManager marks each transaction before its
+// connection is acquired; nested transactions are tracked as a stack.
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    
+    private static final String PRIMARY = "primary";
+    
+    private static final ThreadLocal<Deque<Boolean>> READ_ONLY = ThreadLocal.withInitial(ArrayDeque::new);
+    
+    // Lag is only meaningful while WAL is still being replayed; an idle replica is up to date
+    private static final String LAG_QUERY =
+            "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+    
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Supplier<String> sessionKey;
+    private final long readAfterWriteMs;
+    private final long maxLagMs;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    
+    public ReadReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicaDataSources,
+                                        Supplier<String> sessionKey, long readAfterWriteMs, long maxLagMs) {
+        this.primary = primary;
+        this.sessionKey = sessionKey;
+        this.readAfterWriteMs = readAfterWriteMs;
+        this.maxLagMs = maxLagMs;
+        
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.key, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+    
+    public static void beginTransaction(boolean readOnly) {
+        READ_ONLY.get().push(readOnly);
+    }
+    
+    public static void endTransaction() {
+        READ_ONLY.get().poll();
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Boolean readOnly = READ_ONLY.get().peek();
+        String session = sessionKey.get();
+        if (readOnly == null || !readOnly) {
+            if (readOnly != null && session != null) {
+                lastWrites.put(session, System.currentTimeMillis());
+            }
+            return PRIMARY;
+        }
+        
+        if (session != null) {
+            Long lastWrite = lastWrites.get(session);
+            if (lastWrite != null && System.currentTimeMillis() - lastWrite < readAfterWriteMs) {
+                return PRIMARY;
+            }
+        }
+        
+        int size = replicas.size();
+        int start = nextReplica.getAndIncrement();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, size));
+            if (replica.healthy) {
+                return replica.key;
+            }
+        }
+        return PRIMARY;
+    }
+    
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy = isHealthy(replica);
+            if (healthy != replica.healthy) {
+                log.warn("Read replica {} is now {}", replica.key, healthy ? "healthy" : "unhealthy");
+            }
+            replica.healthy = healthy;
+        }
+        
+        long cutoff = System.currentTimeMillis() - readAfterWriteMs;
+        lastWrites.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+    
+    private boolean isHealthy(Replica replica) {
+        try (Connection con = replica.dataSource.getConnection()) {
+            if (!con.isValid(2)) {
+                return false;
+            }
+            if (maxLagMs <= 0 || !"PostgreSQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName())) {
+                return true;
+            }
+            try (Statement statement = con.createStatement(); ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                return rs.next() && rs.getDouble(1) <= maxLagMs;
+            }
+        } catch (Exception e) {
+            log.debug("Health check failed for read replica {}", replica.key, e);
+            return false;
+        }
+    }
+    
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.dataSource.close();
+        }
+        primary.close();
+    }
+    
+    private static final class Replica {
+        
+        private final String key;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+        
+        Replica(String key, HikariDataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
@@ -12,7 +13,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class AppointmentHistory {
+public class AppointmentHistory implements Persistable<Long> {
     
     @Id
     private Long id;
@@ -41,9 +42,22 @@ public class AppointmentHistory {
     @Column(nullable = false)
     private String status;
     
+    // Version of the last applied event, events from the other lane may arrive out of order
+    private Long sourceVersion;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
     @Column(nullable = false)
     private LocalDateTime updatedAt;
+    
+    // Set on rows built from an event, so save() persists them instead of merging, which would
+    // first select the id from every partition
+    @Transient
+    private boolean newRow;
+    
+    @Override
+    public boolean isNew() {
+        return newRow;
+    }
 }
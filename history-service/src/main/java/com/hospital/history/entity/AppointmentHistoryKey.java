@@ -0,0 +1,27 @@
+package com.hospital.history.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One row per appointment. The partitioned table's key has to include appointment_date, so this
+// table is what keeps the id unique, and it tells a lookup by id which partition holds the row.
+@Entity
+@Table(name = "appointment_history_key")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentHistoryKey {
+    
+    @Id
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDateTime appointmentDate;
+}
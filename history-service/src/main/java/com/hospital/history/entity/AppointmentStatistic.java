@@ -0,0 +1,20 @@
+package com.hospital.history.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "appointment_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentStatistic {
+    
+    @EmbeddedId
+    private AppointmentStatisticId id;
+    
+    @Column(nullable = false)
+    private long appointmentCount;
+}
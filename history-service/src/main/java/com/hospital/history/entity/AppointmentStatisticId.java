@@ -0,0 +1,26 @@
+package com.hospital.history.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentStatisticId implements Serializable {
+    
+    @Column(nullable = false)
+    private Long doctorId;
+    
+    @Column(nullable = false)
+    private LocalDate day;
+    
+    @Column(nullable = false)
+    private String status;
+}
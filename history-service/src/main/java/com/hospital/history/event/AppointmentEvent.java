@@ -19,4 +19,6 @@ public class AppointmentEvent implements Serializable {
     private String doctorName;
     private LocalDateTime appointmentDate;
     private String eventType;
+    private String status;
+    private Long version;
 }
@@ -0,0 +1,100 @@
+package com.hospital.history.export;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentHistoryExportService {
+    
+    private static final String SELECT_COLUMNS =
+            "SELECT id, patient_id, patient_name, patient_email, doctor_id, doctor_name, " +
+            "appointment_date, notes, status, created_at, updated_at FROM appointment_history";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${history.export.fetch-size:1000}")
+    private int fetchSize;
+    
+    @Value("${history.export.flush-every-rows:5000}")
+    private int flushEveryRows;
+    
+    // The read-only transaction keeps a server-side cursor open while rows are fetched in
+    // batches of fetchSize, so memory use does not depend on the number of rows exported.
+    @Transactional(readOnly = true)
+    public long exportCsv(LocalDateTime from, LocalDateTime to, Long doctorId, String status, OutputStream out) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        
+        if (from != null) {
+            sql.append(" AND appointment_date >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND appointment_date < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+            params.add(doctorId);
+        }
+        if (status != null) {
+            sql.append(" AND status = ?");
+            params.add(status);
+        }
+        sql.append(" ORDER BY appointment_date, id");
+        
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        HistoryCsvWriter csv = new HistoryCsvWriter(writer);
+        
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, (ResultSetExtractor<Void>) rs -> {
+            try {
+                // From the metadata, so an export without rows still has its header
+                csv.writeHeader(rs.getMetaData());
+                while (rs.next()) {
+                    csv.writeRow(rs);
+                    if (csv.getRowCount() % flushEveryRows == 0) {
+                        csv.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        
+        try {
+            csv.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        log.info("Exported {} appointment history rows", csv.getRowCount());
+        return csv.getRowCount();
+    }
+}
@@ -0,0 +1,78 @@
+package com.hospital.history.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public class HistoryCsvWriter {
+    
+    private final Writer writer;
+    
+    private long rowCount;
+    
+    public HistoryCsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+    
+    public void writeHeader(ResultSetMetaData metaData) throws SQLException, IOException {
+        int columns = metaData.getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                writer.write(',');
+            }
+            writeValue(metaData.getColumnLabel(i));
+        }
+        writer.write('\n');
+    }
+    
+    public void writeRow(ResultSet rs) throws SQLException, IOException {
+        int columns = rs.getMetaData().getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                writer.write(',');
+            }
+            Object value = rs.getObject(i);
+            if (value != null) {
+                writeValue(value.toString());
+            }
+        }
+        writer.write('\n');
+        rowCount++;
+    }
+    
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    public void flush() throws IOException {
+        writer.flush();
+    }
+    
+    private void writeValue(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
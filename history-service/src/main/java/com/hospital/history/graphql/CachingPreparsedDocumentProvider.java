@@ -0,0 +1,89 @@
+package com.hospital.history.graphql;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.execution.preparsed.persisted.ApolloPersistedQuerySupport;
+import graphql.execution.preparsed.persisted.PersistedQueryCache;
+import graphql.execution.preparsed.persisted.PersistedQueryCacheMiss;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Keeps parsed and validated documents so repeated queries skip both steps. Requests carrying
+// an Apollo "persistedQuery" extension are resolved by hash, other requests by query text;
+// the two kinds of key never match each other, even for a query text that looks like a hash.
+// Documents are parsed outside any lock; two threads missing on the same query both parse it
+// and one result is kept. Once full, an arbitrary entry makes room for the new one.
+public class CachingPreparsedDocumentProvider implements PreparsedDocumentProvider {
+    
+    private static final String PERSISTED_QUERY_EXTENSION = "persistedQuery";
+    
+    private final Map<DocumentKey, PreparsedDocumentEntry> documents = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final PreparsedDocumentProvider persistedQuerySupport;
+    
+    public CachingPreparsedDocumentProvider(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.persistedQuerySupport = new ApolloPersistedQuerySupport(new PersistedDocumentCache());
+    }
+    
+    @Override
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput,
+                                              Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        if (executionInput.getExtensions() != null
+                && executionInput.getExtensions().containsKey(PERSISTED_QUERY_EXTENSION)) {
+            return persistedQuerySupport.getDocument(executionInput, parseAndValidateFunction);
+        }
+        
+        DocumentKey key = new DocumentKey(false, executionInput.getQuery());
+        PreparsedDocumentEntry entry = documents.get(key);
+        if (entry == null) {
+            entry = cache(key, parseAndValidateFunction.apply(executionInput));
+        }
+        return entry;
+    }
+    
+    private PreparsedDocumentEntry cache(DocumentKey key, PreparsedDocumentEntry entry) {
+        Iterator<DocumentKey> keys = documents.keySet().iterator();
+        while (documents.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+        PreparsedDocumentEntry existing = documents.putIfAbsent(key, entry);
+        return existing != null ? existing : entry;
+    }
+    
+    public int size() {
+        return documents.size();
+    }
+    
+    // Query text, or the persisted query id when persisted is set
+    private record DocumentKey(boolean persisted, Object value) {}
+    
+    private class PersistedDocumentCache implements PersistedQueryCache {
+        
+        @Override
+        public PreparsedDocumentEntry getPersistedQueryDocument(Object persistedQueryId,
+                                                                ExecutionInput executionInput,
+                                                                PersistedQueryCacheMiss onCacheMiss)
+                throws PersistedQueryNotFound {
+            DocumentKey key = new DocumentKey(true, persistedQueryId);
+            PreparsedDocumentEntry entry = documents.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            
+            String query = executionInput.getQuery();
+            if (query == null || query.isBlank() || PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query)) {
+                throw new PersistedQueryNotFound(persistedQueryId);
+            }
+            
+            return cache(key, onCacheMiss.apply(query));
+        }
+    }
+}
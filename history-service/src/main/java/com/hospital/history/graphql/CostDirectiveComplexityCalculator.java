@@ -0,0 +1,47 @@
+package com.hospital.history.graphql;
+
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.FieldComplexityEnvironment;
+import graphql.schema.GraphQLAppliedDirective;
+import graphql.schema.GraphQLAppliedDirectiveArgument;
+
+// Reads the @cost(value, multiplier) hints declared in schema.graphqls. A field costs "value"
+// plus the cost of its selection, multiplied by the named argument (e.g. a page size) if set.
+// The multiplier is capped at the page size the resolvers actually return.
+public class CostDirectiveComplexityCalculator implements FieldComplexityCalculator {
+    
+    private static final String COST_DIRECTIVE = "cost";
+    
+    private final int maxPageSize;
+    
+    public CostDirectiveComplexityCalculator(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+    
+    @Override
+    public int calculate(FieldComplexityEnvironment environment, int childComplexity) {
+        GraphQLAppliedDirective cost = environment.getFieldDefinition().getAppliedDirective(COST_DIRECTIVE);
+        if (cost == null) {
+            return 1 + childComplexity;
+        }
+        
+        int value = intArgument(cost.getArgument("value"), 1);
+        
+        GraphQLAppliedDirectiveArgument multiplierArgument = cost.getArgument("multiplier");
+        if (multiplierArgument != null && multiplierArgument.getValue() != null) {
+            Object multiplier = environment.getArguments().get(multiplierArgument.<String>getValue());
+            if (multiplier instanceof Number number) {
+                return value + childComplexity * Math.max(1, Math.min(number.intValue(), maxPageSize));
+            }
+        }
+        
+        return value + childComplexity;
+    }
+    
+    private static int intArgument(GraphQLAppliedDirectiveArgument argument, int defaultValue) {
+        if (argument == null || argument.getValue() == null) {
+            return defaultValue;
+        }
+        return ((Number) argument.getValue()).intValue();
+    }
+}
@@ -0,0 +1,65 @@
+package com.hospital.history.graphql;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Records execution time per operation name, so slow or abusive queries show up by name.
+// Operation names come from the client, so only the configured names plus the first
+// "maxOperations" others get their own tag; everything after that is counted as "other".
+public class QueryMetricsInstrumentation extends SimplePerformantInstrumentation {
+    
+    private static final String OTHER = "other";
+    
+    private final MeterRegistry meterRegistry;
+    private final Set<String> knownOperations;
+    private final Set<String> taggedOperations = ConcurrentHashMap.newKeySet();
+    private final int maxOperations;
+    
+    public QueryMetricsInstrumentation(MeterRegistry meterRegistry, Collection<String> knownOperations,
+                                       int maxOperations) {
+        this.meterRegistry = meterRegistry;
+        this.knownOperations = Set.copyOf(knownOperations);
+        this.maxOperations = maxOperations;
+    }
+    
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+                                                                  InstrumentationState state) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String operation = operationTag(parameters.getOperation());
+        
+        return SimpleInstrumentationContext.whenCompleted((result, throwable) -> {
+            String outcome = throwable == null && (result == null || result.getErrors().isEmpty())
+                    ? "SUCCESS" : "ERROR";
+            sample.stop(Timer.builder("graphql.query.execution")
+                    .description("GraphQL query execution time per operation")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        });
+    }
+    
+    private String operationTag(String operation) {
+        if (operation == null) {
+            return "anonymous";
+        }
+        if (knownOperations.contains(operation) || taggedOperations.contains(operation)) {
+            return operation;
+        }
+        // Racing threads may overshoot the limit by a few names, which still keeps it bounded
+        if (taggedOperations.size() < maxOperations && taggedOperations.add(operation)) {
+            return operation;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,67 @@
+package com.hospital.history.listener;
+
+// Additive increase, multiplicative decrease of a listener's consumers and prefetch. A backlog
+// adds one consumer and prefetch-step; slow or failing processing scales both down by the
+// decrease factor; an empty queue gives back one consumer at a time.
+public class AimdPolicy {
+    
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final int minPrefetch;
+    private final int maxPrefetch;
+    private final int prefetchStep;
+    private final double decreaseFactor;
+    private final long minBacklog;
+    private final double targetLatencyMs;
+    private final double maxErrorRate;
+    
+    public AimdPolicy(int minConsumers, int maxConsumers, int minPrefetch, int maxPrefetch, int prefetchStep,
+                      double decreaseFactor, long minBacklog, double targetLatencyMs, double maxErrorRate) {
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        this.prefetchStep = prefetchStep;
+        this.decreaseFactor = decreaseFactor;
+        this.minBacklog = minBacklog;
+        this.targetLatencyMs = targetLatencyMs;
+        this.maxErrorRate = maxErrorRate;
+    }
+    
+    public int getMinConsumers() {
+        return minConsumers;
+    }
+    
+    public int getMinPrefetch() {
+        return minPrefetch;
+    }
+    
+    // Returns null when the listener should stay as it is. depth counts ready messages only, so
+    // a backlog means every consumer's prefetch window is already full.
+    public Decision next(int consumers, int prefetch, long depth, long processed, double latencyMs, double errorRate) {
+        if (processed > 0 && (errorRate > maxErrorRate || latencyMs > targetLatencyMs)) {
+            return decision("decrease", consumers, prefetch,
+                    Math.max(minConsumers, (int) (consumers * decreaseFactor)),
+                    Math.max(minPrefetch, (int) (prefetch * decreaseFactor)));
+        }
+        if (depth >= minBacklog) {
+            return decision("increase", consumers, prefetch,
+                    Math.min(maxConsumers, consumers + 1),
+                    Math.min(maxPrefetch, prefetch + prefetchStep));
+        }
+        if (depth == 0) {
+            return decision("release", consumers, prefetch, Math.max(minConsumers, consumers - 1), prefetch);
+        }
+        return null;
+    }
+    
+    private static Decision decision(String action, int consumers, int prefetch, int nextConsumers, int nextPrefetch) {
+        if (nextConsumers == consumers && nextPrefetch == prefetch) {
+            return null;
+        }
+        return new Decision(action, nextConsumers, nextPrefetch);
+    }
+    
+    public record Decision(String action, int consumers, int prefetch) {
+    }
+}
@@ -1,14 +1,20 @@
 package com.hospital.history.listener;
 
 import com.hospital.history.entity.AppointmentHistory;
+import com.hospital.history.entity.AppointmentHistoryKey;
 import com.hospital.history.event.AppointmentEvent;
+import com.hospital.history.repository.AppointmentHistoryKeyRepository;
 import com.hospital.history.repository.AppointmentHistoryRepository;
+import com.hospital.history.stats.AppointmentStatsAccumulator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -16,49 +22,133 @@ import java.time.LocalDateTime;
 public class AppointmentHistoryListener {
     
     private final AppointmentHistoryRepository repository;
+    private final AppointmentHistoryKeyRepository keyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AppointmentStatsAccumulator statsAccumulator;
+    private final ListenerConcurrencyController concurrencyController;
     
     @RabbitListener(queues = "${rabbitmq.queue.created}")
     public void handleAppointmentCreated(AppointmentEvent event) {
-        log.info("Syncing appointment created to history: {}", event.getAppointmentId());
+        log.debug("Syncing appointment created to history: {}", event.getAppointmentId());
         
         try {
-            AppointmentHistory history = new AppointmentHistory();
-            history.setId(event.getAppointmentId());
-            history.setPatientId(event.getPatientId());
-            history.setPatientName(event.getPatientName());
-            history.setPatientEmail(event.getPatientEmail());
-            history.setDoctorId(event.getDoctorId());
-            history.setDoctorName(event.getDoctorName());
-            history.setAppointmentDate(event.getAppointmentDate());
-            history.setStatus("SCHEDULED");
-            history.setCreatedAt(LocalDateTime.now());
-            history.setUpdatedAt(LocalDateTime.now());
-            
-            repository.save(history);
-            log.info("Successfully synced appointment to history: {}", event.getAppointmentId());
+            try {
+                // A redelivery, or an update from the urgent lane that overtook this event, already stored it
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (keyRepository.existsById(event.getAppointmentId())) {
+                        log.debug("Appointment already in history: {}", event.getAppointmentId());
+                        return;
+                    }
+                    insert(event);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // The other lane inserted the same id between the check and the insert; its key
+                // row is there then, anything else is a real failure
+                if (!keyRepository.existsById(event.getAppointmentId())) {
+                    throw e;
+                }
+                log.debug("Appointment inserted concurrently into history: {}", event.getAppointmentId());
+                return;
+            }
+            log.debug("Successfully synced appointment to history: {}", event.getAppointmentId());
         } catch (Exception e) {
             log.error("Error syncing appointment to history: {}", event.getAppointmentId(), e);
+            concurrencyController.recordFailure();
         }
     }
     
+    // Urgent lanes: same handling, own containers so they never wait behind the bulk queues
+    @RabbitListener(queues = "${rabbitmq.queue.created-urgent}")
+    public void handleUrgentAppointmentCreated(AppointmentEvent event) {
+        handleAppointmentCreated(event);
+    }
+    
+    @RabbitListener(queues = "${rabbitmq.queue.updated-urgent}")
+    public void handleUrgentAppointmentUpdated(AppointmentEvent event) {
+        handleAppointmentUpdated(event);
+    }
+    
     @RabbitListener(queues = "${rabbitmq.queue.updated}")
     public void handleAppointmentUpdated(AppointmentEvent event) {
-        log.info("Syncing appointment update to history: {}", event.getAppointmentId());
+        log.debug("Syncing appointment update to history: {}", event.getAppointmentId());
         
         try {
-            repository.findById(event.getAppointmentId()).ifPresent(history -> {
-                history.setAppointmentDate(event.getAppointmentDate());
-                history.setUpdatedAt(LocalDateTime.now());
-                
-                if ("CANCELLED".equals(event.getEventType())) {
-                    history.setStatus("CANCELLED");
-                }
-                
-                repository.save(history);
-                log.info("Successfully updated appointment in history: {}", event.getAppointmentId());
-            });
+            try {
+                transactionTemplate.executeWithoutResult(status -> applyUpdate(event));
+            } catch (DataIntegrityViolationException e) {
+                // The created event was inserted concurrently from the other lane, update that row
+                transactionTemplate.executeWithoutResult(status -> applyUpdate(event));
+            }
+            log.debug("Successfully updated appointment in history: {}", event.getAppointmentId());
         } catch (Exception e) {
             log.error("Error updating appointment in history: {}", event.getAppointmentId(), e);
+            concurrencyController.recordFailure();
         }
     }
+    
+    private void applyUpdate(AppointmentEvent event) {
+        Optional<AppointmentHistory> existing = repository.findByKey(event.getAppointmentId());
+        if (existing.isEmpty()) {
+            // The created event is still queued in the bulk lane
+            insert(event);
+            return;
+        }
+        
+        AppointmentHistory history = existing.get();
+        if (event.getVersion() != null && history.getSourceVersion() != null
+                && event.getVersion() <= history.getSourceVersion()) {
+            log.debug("Ignoring stale version {} of appointment {}", event.getVersion(), event.getAppointmentId());
+            return;
+        }
+        
+        LocalDateTime previousDate = history.getAppointmentDate();
+        String previousStatus = history.getStatus();
+        
+        history.setAppointmentDate(event.getAppointmentDate());
+        history.setSourceVersion(event.getVersion());
+        history.setUpdatedAt(LocalDateTime.now());
+        
+        if ("CANCELLED".equals(event.getEventType())) {
+            history.setStatus("CANCELLED");
+        } else if (event.getStatus() != null) {
+            history.setStatus(event.getStatus());
+        }
+        
+        if (!previousDate.equals(history.getAppointmentDate())) {
+            keyRepository.save(new AppointmentHistoryKey(history.getId(), history.getAppointmentDate()));
+        }
+        repository.saveAndFlush(history);
+        
+        if (!previousStatus.equals(history.getStatus())
+                || !previousDate.toLocalDate().equals(history.getAppointmentDate().toLocalDate())) {
+            statsAccumulator.decrement(history.getDoctorId(), previousDate.toLocalDate(), previousStatus);
+            statsAccumulator.increment(history.getDoctorId(),
+                    history.getAppointmentDate().toLocalDate(), history.getStatus());
+        }
+    }
+    
+    private void insert(AppointmentEvent event) {
+        AppointmentHistory history = new AppointmentHistory();
+        history.setId(event.getAppointmentId());
+        history.setPatientId(event.getPatientId());
+        history.setPatientName(event.getPatientName());
+        history.setPatientEmail(event.getPatientEmail());
+        history.setDoctorId(event.getDoctorId());
+        history.setDoctorName(event.getDoctorName());
+        history.setAppointmentDate(event.getAppointmentDate());
+        history.setStatus("CANCELLED".equals(event.getEventType()) ? "CANCELLED"
+                : event.getStatus() != null ? event.getStatus() : "SCHEDULED");
+        history.setSourceVersion(event.getVersion());
+        history.setCreatedAt(LocalDateTime.now());
+        history.setUpdatedAt(LocalDateTime.now());
+        history.setNewRow(true);
+        
+        // The key goes first: a concurrent insert of the same id fails on its primary key, which
+        // the partitioned table cannot enforce. Flushed so that happens before the stats change.
+        keyRepository.saveAndFlush(new AppointmentHistoryKey(history.getId(), history.getAppointmentDate()));
+        repository.saveAndFlush(history);
+        
+        statsAccumulator.increment(history.getDoctorId(),
+                history.getAppointmentDate().toLocalDate(), history.getStatus());
+    }
 }
@@ -0,0 +1,230 @@
+package com.hospital.history.listener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Resizes every @RabbitListener container with AimdPolicy from its queue depth and the latency and
+// failures of the last interval, then caps the containers to a shared budget of consumers split by
+// lane weight. A new prefetch only applies to consumers started after the change.
+@Component
+@Slf4j
+public class ListenerConcurrencyController {
+    
+    private static final ThreadLocal<QueueLoad> CURRENT = new ThreadLocal<>();
+    
+    private final RabbitListenerEndpointRegistry endpointRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+    private final AimdPolicy policy;
+    private final boolean enabled;
+    private final int totalConsumers;
+    private final Map<String, QueueLoad> loads = new ConcurrentHashMap<>();
+    
+    // Lazy: the registry creates the listener containers, whose customizer needs this controller
+    public ListenerConcurrencyController(@Lazy RabbitListenerEndpointRegistry endpointRegistry,
+                                         AmqpAdmin amqpAdmin,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${rabbitmq.listener.adaptive.enabled:true}") boolean enabled,
+                                         @Value("${rabbitmq.listener.adaptive.min-consumers:1}") int minConsumers,
+                                         @Value("${rabbitmq.listener.adaptive.max-consumers:8}") int maxConsumers,
+                                         @Value("${rabbitmq.listener.adaptive.total-consumers:16}") int totalConsumers,
+                                         @Value("${rabbitmq.listener.adaptive.min-prefetch:1}") int minPrefetch,
+                                         @Value("${rabbitmq.listener.adaptive.max-prefetch:100}") int maxPrefetch,
+                                         @Value("${rabbitmq.listener.adaptive.prefetch-step:10}") int prefetchStep,
+                                         @Value("${rabbitmq.listener.adaptive.decrease-factor:0.5}") double decreaseFactor,
+                                         @Value("${rabbitmq.listener.adaptive.min-backlog:10}") long minBacklog,
+                                         @Value("${rabbitmq.listener.adaptive.target-latency-ms:200}") double targetLatencyMs,
+                                         @Value("${rabbitmq.listener.adaptive.max-error-rate:0.05}") double maxErrorRate) {
+        this.endpointRegistry = endpointRegistry;
+        this.amqpAdmin = amqpAdmin;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.totalConsumers = totalConsumers;
+        this.policy = new AimdPolicy(minConsumers, maxConsumers, minPrefetch, maxPrefetch, prefetchStep,
+                decreaseFactor, minBacklog, targetLatencyMs, maxErrorRate);
+    }
+    
+    // Called from the container customizer, before the container starts. The weight is the
+    // container's share of the consumer budget while several containers have work. With adaptive
+    // sizing off the container keeps its configured consumers and prefetch.
+    public void register(SimpleMessageListenerContainer container, int weight) {
+        if (!enabled) {
+            return;
+        }
+        load(container.getQueueNames()[0]).weight = weight;
+        container.setAdviceChain(loadTrackingAdvice());
+        container.setPrefetchCount(policy.getMinPrefetch());
+        container.setConcurrentConsumers(policy.getMinConsumers());
+    }
+    
+    // Times each delivery and counts the ones that throw
+    private MethodInterceptor loadTrackingAdvice() {
+        return invocation -> {
+            Object data = invocation.getArguments()[1];
+            QueueLoad load = data instanceof Message message
+                    ? load(message.getMessageProperties().getConsumerQueue())
+                    : null;
+            CURRENT.set(load);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                CURRENT.remove();
+                if (load != null) {
+                    load.record(System.nanoTime() - start, failed);
+                }
+            }
+        };
+    }
+    
+    // For listeners that handle their own errors: counts the current delivery as failed
+    public void recordFailure() {
+        QueueLoad load = CURRENT.get();
+        if (load != null) {
+            load.failures.increment();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${rabbitmq.listener.adaptive.interval-ms:5000}")
+    public void adjust() {
+        if (!enabled) {
+            return;
+        }
+        List<Plan> plans = new ArrayList<>();
+        for (MessageListenerContainer listenerContainer : endpointRegistry.getListenerContainers()) {
+            // Only the containers registered through the customizer are sized
+            if (listenerContainer instanceof SimpleMessageListenerContainer container && container.isRunning()
+                    && loads.containsKey(container.getQueueNames()[0])) {
+                Plan plan = plan(container);
+                if (plan != null) {
+                    plans.add(plan);
+                }
+            }
+        }
+        
+        int[] demand = new int[plans.size()];
+        int[] weight = new int[plans.size()];
+        for (int i = 0; i < plans.size(); i++) {
+            demand[i] = plans.get(i).consumers();
+            weight[i] = plans.get(i).load().weight;
+        }
+        int[] allocation = WeightedShare.allocate(totalConsumers, policy.getMinConsumers(), demand, weight);
+        for (int i = 0; i < plans.size(); i++) {
+            apply(plans.get(i), allocation[i]);
+        }
+    }
+    
+    // What AimdPolicy wants for the container, before the budget is split
+    private Plan plan(SimpleMessageListenerContainer container) {
+        String queue = container.getQueueNames()[0];
+        QueueLoad load = load(queue);
+        
+        QueueInformation info;
+        try {
+            info = amqpAdmin.getQueueInfo(queue);
+        } catch (AmqpException e) {
+            log.debug("Could not read the depth of queue {}: {}", queue, e.getMessage());
+            return null;
+        }
+        if (info == null) {
+            return null;
+        }
+        
+        long processed = load.processed.sumThenReset();
+        long nanos = load.nanos.sumThenReset();
+        long failures = load.failures.sumThenReset();
+        load.depth = info.getMessageCount();
+        load.latencyMs = processed > 0 ? nanos / 1_000_000.0 / processed : 0;
+        double errorRate = processed > 0 ? (double) failures / processed : 0;
+        
+        AimdPolicy.Decision decision = policy.next(load.consumers, load.prefetch, load.depth,
+                processed, load.latencyMs, errorRate);
+        return decision != null
+                ? new Plan(container, queue, load, decision.action(), decision.consumers(), decision.prefetch(), processed, errorRate)
+                : new Plan(container, queue, load, null, load.consumers, load.prefetch, processed, errorRate);
+    }
+    
+    private void apply(Plan plan, int allocated) {
+        QueueLoad load = plan.load();
+        int consumers = Math.min(plan.consumers(), allocated);
+        if (consumers == load.consumers && plan.prefetch() == load.prefetch) {
+            return;
+        }
+        // Fewer consumers than the policy asked for: a heavier lane needs them
+        String action = consumers < plan.consumers() ? "share" : plan.action();
+        
+        log.info("Listener on {}: {} to {} consumers, prefetch {} (depth {}, {} processed, {} ms avg, error rate {})",
+                plan.queue(), action, consumers, plan.prefetch(),
+                load.depth, plan.processed(), String.format("%.1f", load.latencyMs), String.format("%.3f", plan.errorRate()));
+        meterRegistry.counter("rabbitmq.listener.adjustments", "queue", plan.queue(), "action", action).increment();
+        load.consumers = consumers;
+        load.prefetch = plan.prefetch();
+        
+        // Prefetch first, so consumers added below already use it
+        plan.container().setPrefetchCount(load.prefetch);
+        plan.container().setConcurrentConsumers(load.consumers);
+    }
+    
+    private QueueLoad load(String queue) {
+        return loads.computeIfAbsent(queue, name -> {
+            QueueLoad load = new QueueLoad(policy.getMinConsumers(), policy.getMinPrefetch());
+            Gauge.builder("rabbitmq.listener.consumers", load, l -> l.consumers).tag("queue", name).register(meterRegistry);
+            Gauge.builder("rabbitmq.listener.prefetch", load, l -> l.prefetch).tag("queue", name).register(meterRegistry);
+            Gauge.builder("rabbitmq.listener.queue.depth", load, l -> l.depth).tag("queue", name).register(meterRegistry);
+            Gauge.builder("rabbitmq.listener.latency", load, l -> l.latencyMs).tag("queue", name)
+                    .baseUnit("milliseconds").register(meterRegistry);
+            return load;
+        });
+    }
+    
+    private static final class QueueLoad {
+        
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile int consumers;
+        private volatile int prefetch;
+        private volatile long depth;
+        private volatile double latencyMs;
+        private volatile int weight = 1;
+        
+        QueueLoad(int consumers, int prefetch) {
+            this.consumers = consumers;
+            this.prefetch = prefetch;
+        }
+        
+        void record(long elapsedNanos, boolean failed) {
+            processed.increment();
+            nanos.add(elapsedNanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+    }
+    
+    private record Plan(SimpleMessageListenerContainer container, String queue, QueueLoad load, String action,
+                        int consumers, int prefetch, long processed, double errorRate) {
+    }
+}
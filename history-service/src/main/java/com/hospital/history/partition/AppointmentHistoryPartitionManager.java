@@ -0,0 +1,233 @@
+package com.hospital.history.partition;
+
+import com.hospital.history.export.HistoryCsvWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentHistoryPartitionManager {
+    
+    private static final String PARENT_TABLE = "appointment_history";
+    private static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARENT_TABLE + "_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'p'yyyy_MM");
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${history.partitioning.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${history.partitioning.months-ahead:12}")
+    private int monthsAhead;
+    
+    @Value("${history.partitioning.archive-after-months:24}")
+    private int archiveAfterMonths;
+    
+    @Value("${history.partitioning.archive-dir:./archive}")
+    private String archiveDir;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        // A failure here must not stop the service; the scheduled run tries again
+        try {
+            maintainPartitions();
+        } catch (Exception e) {
+            log.error("Partition maintenance failed at startup", e);
+        }
+    }
+    
+    @Scheduled(cron = "${history.partitioning.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        if (!isPartitionedTable()) {
+            log.warn("Table {} is not range-partitioned, skipping partition maintenance", PARENT_TABLE);
+            return;
+        }
+        
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                createPartition(month);
+            } catch (Exception e) {
+                log.error("Error creating partition for {}", month, e);
+            }
+        }
+        
+        if (archiveAfterMonths > 0) {
+            YearMonth cutoff = current.minusMonths(archiveAfterMonths);
+            for (String partition : listPartitions()) {
+                YearMonth month = monthOf(partition);
+                if (month != null && month.isBefore(cutoff)) {
+                    archivePartition(partition, month);
+                }
+            }
+        }
+    }
+    
+    private boolean isPartitionedTable() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                con.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            return false;
+        }
+        
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                "WHERE c.relname = ?",
+                Integer.class, PARENT_TABLE);
+        return count != null && count > 0;
+    }
+    
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ?",
+                String.class, PARENT_TABLE);
+    }
+    
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        if (listPartitions().contains(partition)) {
+            return;
+        }
+        
+        String from = month.atDay(1).atStartOfDay().toString();
+        String to = month.plusMonths(1).atDay(1).atStartOfDay().toString();
+        
+        // Rows for this month may already sit in the default partition; move them into the new
+        // table before attaching it, otherwise PostgreSQL rejects the overlapping bound.
+        boolean created = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            lockMaintenance();
+            if (listPartitions().contains(partition)) {
+                return false;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + partition +
+                    " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            jdbcTemplate.update("INSERT INTO " + partition + " SELECT * FROM " + DEFAULT_PARTITION +
+                    " WHERE appointment_date >= ?::timestamp AND appointment_date < ?::timestamp", from, to);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION +
+                    " WHERE appointment_date >= ?::timestamp AND appointment_date < ?::timestamp", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + partition +
+                    " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            return true;
+        }));
+        
+        if (created) {
+            log.info("Created partition {} for {}", partition, month);
+        }
+    }
+    
+    // Serializes the DDL of instances that start or run the cron together; released at commit.
+    // Every step checks the catalog again once it holds the lock.
+    private void lockMaintenance() {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> { }, PARENT_TABLE);
+    }
+    
+    private void archivePartition(String partition, YearMonth month) {
+        Path target = Paths.get(archiveDir, partition + ".csv.gz");
+        try {
+            Files.createDirectories(target.getParent());
+            long rows = exportPartition(partition, target);
+            
+            String from = month.atDay(1).atStartOfDay().toString();
+            String to = month.plusMonths(1).atDay(1).atStartOfDay().toString();
+            boolean dropped = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                lockMaintenance();
+                if (!listPartitions().contains(partition)) {
+                    return false;
+                }
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                jdbcTemplate.update("DELETE FROM appointment_history_key" +
+                        " WHERE appointment_date >= ?::timestamp AND appointment_date < ?::timestamp", from, to);
+                return true;
+            }));
+            
+            if (dropped) {
+                log.info("Archived partition {} ({} rows) to {}", partition, rows, target);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving partition {} for {}", partition, month, e);
+        }
+    }
+    
+    private long exportPartition(String partition, Path target) throws IOException {
+        // Unique, so two instances archiving the same month never write the same file
+        Path tmp = Files.createTempFile(target.getParent(), partition, ".tmp");
+        
+        long rows = transactionTemplate.execute(status -> {
+            try (Writer out = new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8)) {
+                HistoryCsvWriter csv = new HistoryCsvWriter(out);
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT * FROM " + partition + " ORDER BY appointment_date");
+                    ps.setFetchSize(1000);
+                    return ps;
+                }, (ResultSetExtractor<Void>) rs -> {
+                    try {
+                        csv.writeHeader(rs.getMetaData());
+                        while (rs.next()) {
+                            csv.writeRow(rs);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+                csv.flush();
+                return csv.getRowCount();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        return rows;
+    }
+    
+    static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_" + month.format(PARTITION_SUFFIX);
+    }
+    
+    static YearMonth monthOf(String partition) {
+        Matcher matcher = PARTITION_NAME.matcher(partition);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
@@ -0,0 +1,9 @@
+package com.hospital.history.repository;
+
+import com.hospital.history.entity.AppointmentHistoryKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AppointmentHistoryKeyRepository extends JpaRepository<AppointmentHistoryKey, Long> {
+}
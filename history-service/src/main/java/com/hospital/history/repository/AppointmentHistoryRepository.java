@@ -1,18 +1,33 @@
 package com.hospital.history.repository;
 
 import com.hospital.history.entity.AppointmentHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AppointmentHistoryRepository extends JpaRepository<AppointmentHistory, Long> {
     
+    // Use instead of findById: the key's appointment_date lets PostgreSQL read a single partition
+    @Query("SELECT h FROM AppointmentHistory h, AppointmentHistoryKey k " +
+            "WHERE k.id = :id AND h.id = k.id AND h.appointmentDate = k.appointmentDate")
+    Optional<AppointmentHistory> findByKey(@Param("id") Long id);
+    
     List<AppointmentHistory> findByPatientId(Long patientId);
     
     List<AppointmentHistory> findByPatientIdAndAppointmentDateGreaterThan(Long patientId, LocalDateTime date);
     
+    List<AppointmentHistory> findByPatientIdAndAppointmentDateBetween(Long patientId, LocalDateTime from, LocalDateTime to);
+    
+    List<AppointmentHistory> findByAppointmentDateBetween(LocalDateTime from, LocalDateTime to, Pageable pageable);
+    
+    List<AppointmentHistory> findAllBy(Pageable pageable);
+    
     List<AppointmentHistory> findByDoctorId(Long doctorId);
 }
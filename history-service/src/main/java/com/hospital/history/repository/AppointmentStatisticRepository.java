@@ -0,0 +1,31 @@
+package com.hospital.history.repository;
+
+import com.hospital.history.entity.AppointmentStatistic;
+import com.hospital.history.entity.AppointmentStatisticId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AppointmentStatisticRepository extends JpaRepository<AppointmentStatistic, AppointmentStatisticId> {
+    
+    @Modifying
+    @Query(value = "INSERT INTO appointment_stats (doctor_id, day, status, appointment_count) " +
+            "VALUES (:doctorId, :day, :status, :delta) " +
+            "ON CONFLICT (doctor_id, day, status) " +
+            "DO UPDATE SET appointment_count = appointment_stats.appointment_count + EXCLUDED.appointment_count",
+            nativeQuery = true)
+    void addToCount(@Param("doctorId") Long doctorId,
+                    @Param("day") LocalDate day,
+                    @Param("status") String status,
+                    @Param("delta") long delta);
+    
+    List<AppointmentStatistic> findByIdDayBetweenOrderByIdDay(LocalDate from, LocalDate to);
+    
+    List<AppointmentStatistic> findByIdDoctorIdAndIdDayBetweenOrderByIdDay(Long doctorId, LocalDate from, LocalDate to);
+}
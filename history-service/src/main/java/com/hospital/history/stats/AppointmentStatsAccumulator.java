@@ -0,0 +1,116 @@
+package com.hospital.history.stats;
+
+import com.hospital.history.repository.AppointmentStatisticRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Status counts per doctor and day, accumulated in memory by the listeners and added to
+// appointment_stats on a fixed delay. Each counter keeps a running total of increments and
+// decrements; a flush writes the part that has not been written yet, so concurrent updates are
+// never lost. Fully flushed counters are retired and removed so days that no longer change do
+// not pile up in memory; an update that finds its counter retired starts a new one.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentStatsAccumulator {
+    
+    private final AppointmentStatisticRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final Map<StatKey, Counter> counters = new ConcurrentHashMap<>();
+    
+    public void increment(Long doctorId, LocalDate day, String status) {
+        add(doctorId, day, status, 1);
+    }
+    
+    public void decrement(Long doctorId, LocalDate day, String status) {
+        add(doctorId, day, status, -1);
+    }
+    
+    private void add(Long doctorId, LocalDate day, String status, long delta) {
+        if (doctorId == null || day == null || status == null) {
+            return;
+        }
+        StatKey key = new StatKey(doctorId, day, status);
+        while (true) {
+            Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+            if (counter.add(delta)) {
+                return;
+            }
+            counters.remove(key, counter);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${history.stats.flush-interval-ms:5000}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Map.Entry<StatKey, Long>> pending = new ArrayList<>();
+        for (Map.Entry<StatKey, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            long delta = counter.total.get() - counter.flushed;
+            if (delta != 0) {
+                pending.add(Map.entry(entry.getKey(), delta));
+            } else if (counter.retire()) {
+                counters.remove(entry.getKey(), counter);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> pending.forEach(entry -> {
+                StatKey key = entry.getKey();
+                repository.addToCount(key.doctorId(), key.day(), key.status(), entry.getValue());
+            }));
+        } catch (Exception e) {
+            log.error("Error flushing {} appointment statistics, will retry", pending.size(), e);
+            return;
+        }
+        
+        // Only flush() retires counters, so every pending one is still in the map
+        for (Map.Entry<StatKey, Long> entry : pending) {
+            Counter counter = counters.get(entry.getKey());
+            counter.flushed += entry.getValue();
+            if (counter.retire()) {
+                counters.remove(entry.getKey(), counter);
+            }
+        }
+        log.debug("Flushed {} appointment statistics", pending.size());
+    }
+    
+    private record StatKey(Long doctorId, LocalDate day, String status) {}
+    
+    int size() {
+        return counters.size();
+    }
+    
+    private static class Counter {
+        
+        private static final long RETIRED = Long.MIN_VALUE;
+        
+        private final AtomicLong total = new AtomicLong();
+        // Only touched by flush()
+        private long flushed;
+        
+        boolean add(long delta) {
+            return total.getAndUpdate(value -> value == RETIRED ? RETIRED : value + delta) != RETIRED;
+        }
+        
+        // Succeeds only while everything added so far has been flushed; no add lands afterwards
+        boolean retire() {
+            return total.compareAndSet(flushed, RETIRED);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.hospital.history.stats;
+
+public record DailyStats(
+        Long doctorId,
+        String day,
+        long scheduled,
+        long completed,
+        long cancelled,
+        long noShow,
+        long total,
+        double noShowRate,
+        double cancellationRate
+) {}
@@ -0,0 +1,94 @@
+-- Statements end with ^; (spring.sql.init.separator) because the DO blocks contain semicolons.
+
+-- appointment_history is range-partitioned by appointment month so date-bounded queries only
+-- touch the relevant partitions. Monthly partitions are created ahead of time and archived by
+-- AppointmentHistoryPartitionManager; rows outside the maintained range land in the default partition.
+
+-- A plain appointment_history created by ddl-auto before partitioning is moved aside here and
+-- its rows are copied into the partitioned table further down
+DO $$
+DECLARE
+    primary_key TEXT;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('appointment_history')) = 'r' THEN
+        ALTER TABLE appointment_history RENAME TO appointment_history_unpartitioned;
+        -- Frees the name for the primary key of the partitioned table
+        SELECT conname INTO primary_key FROM pg_constraint
+        WHERE conrelid = 'appointment_history_unpartitioned'::regclass AND contype = 'p';
+        IF primary_key IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE appointment_history_unpartitioned RENAME CONSTRAINT %I TO %I',
+                    primary_key, 'appointment_history_unpartitioned_pkey');
+        END IF;
+    END IF;
+END $$^;
+
+CREATE TABLE IF NOT EXISTS appointment_history (
+    id BIGINT NOT NULL,
+    patient_id BIGINT NOT NULL,
+    patient_name VARCHAR(255) NOT NULL,
+    patient_email VARCHAR(255) NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    doctor_name VARCHAR(255) NOT NULL,
+    appointment_date TIMESTAMP(6) NOT NULL,
+    notes VARCHAR(500),
+    status VARCHAR(255) NOT NULL,
+    source_version BIGINT,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, appointment_date)
+) PARTITION BY RANGE (appointment_date)^;
+
+-- Tables created before the urgent event lanes
+ALTER TABLE appointment_history ADD COLUMN IF NOT EXISTS source_version BIGINT^;
+
+CREATE TABLE IF NOT EXISTS appointment_history_default PARTITION OF appointment_history DEFAULT^;
+
+-- Rows of a table moved aside above. The old table is dropped in the same statement, so a
+-- failed copy is simply repeated on the next start.
+DO $$
+BEGIN
+    IF to_regclass('appointment_history_unpartitioned') IS NOT NULL THEN
+        INSERT INTO appointment_history (id, patient_id, patient_name, patient_email, doctor_id, doctor_name,
+                                         appointment_date, notes, status, created_at, updated_at)
+        SELECT id, patient_id, patient_name, patient_email, doctor_id, doctor_name,
+               appointment_date, notes, status, created_at, updated_at
+        FROM appointment_history_unpartitioned
+        ON CONFLICT DO NOTHING;
+        DROP TABLE appointment_history_unpartitioned;
+    END IF;
+END $$^;
+
+CREATE INDEX IF NOT EXISTS idx_appointment_history_patient_date ON appointment_history (patient_id, appointment_date)^;
+CREATE INDEX IF NOT EXISTS idx_appointment_history_doctor_date ON appointment_history (doctor_id, appointment_date)^;
+-- Order of the CSV export
+CREATE INDEX IF NOT EXISTS idx_appointment_history_date_id ON appointment_history (appointment_date, id)^;
+
+-- The partition key makes (id, appointment_date) the only enforceable key, so ids are kept unique
+-- here, and lookups by id read the date first so that they only touch one partition
+CREATE TABLE IF NOT EXISTS appointment_history_key (
+    id BIGINT NOT NULL PRIMARY KEY,
+    appointment_date TIMESTAMP(6) NOT NULL
+)^;
+
+-- Backfills tables created before the key table, keeping the latest row of an id
+INSERT INTO appointment_history_key (id, appointment_date)
+SELECT DISTINCT ON (id) id, appointment_date FROM appointment_history
+WHERE NOT EXISTS (SELECT 1 FROM appointment_history_key)
+ORDER BY id, updated_at DESC^;
+
+-- Daily status counts kept up to date by AppointmentStatsAccumulator; created here so it can be
+-- backfilled before the listeners start adding to it
+CREATE TABLE IF NOT EXISTS appointment_stats (
+    doctor_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    appointment_count BIGINT NOT NULL,
+    PRIMARY KEY (doctor_id, day, status)
+)^;
+
+-- Backfills from the history recorded before the counters existed
+INSERT INTO appointment_stats (doctor_id, day, status, appointment_count)
+SELECT doctor_id, CAST(appointment_date AS DATE), status, count(*) FROM appointment_history
+WHERE NOT EXISTS (SELECT 1 FROM appointment_stats)
+GROUP BY doctor_id, CAST(appointment_date AS DATE), status
+ON CONFLICT DO NOTHING^;
@@ -0,0 +1,105 @@
+package com.hospital.history.export;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// appointment_history as a plain H2 table; the export only needs its columns
+class AppointmentHistoryExportServiceTest {
+    
+    private static final String HEADER = "ID,PATIENT_ID,PATIENT_NAME,PATIENT_EMAIL,DOCTOR_ID,DOCTOR_NAME," +
+            "APPOINTMENT_DATE,NOTES,STATUS,CREATED_AT,UPDATED_AT\n";
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 1, 10, 0);
+    
+    private JdbcTemplate jdbcTemplate;
+    private AppointmentHistoryExportService exportService;
+    
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE appointment_history (id BIGINT NOT NULL, patient_id BIGINT NOT NULL, " +
+                "patient_name VARCHAR(255) NOT NULL, patient_email VARCHAR(255) NOT NULL, doctor_id BIGINT NOT NULL, " +
+                "doctor_name VARCHAR(255) NOT NULL, appointment_date TIMESTAMP(6) NOT NULL, notes VARCHAR(500), " +
+                "status VARCHAR(255) NOT NULL, created_at TIMESTAMP(6) NOT NULL, updated_at TIMESTAMP(6) NOT NULL)");
+        exportService = new AppointmentHistoryExportService(jdbcTemplate);
+        ReflectionTestUtils.setField(exportService, "fetchSize", 2);
+        ReflectionTestUtils.setField(exportService, "flushEveryRows", 2);
+    }
+    
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+    
+    @Test
+    void emptyResultStillHasTheHeader() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        long rows = exportService.exportCsv(null, null, null, null, out);
+        
+        assertThat(rows).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(HEADER);
+    }
+    
+    @Test
+    void streamsRowsInDateOrderAndFlushesAsItGoes() {
+        insert(3, DAY.plusDays(2), "third");
+        insert(2, DAY, "second, same day");
+        insert(1, DAY, null);
+        insert(5, DAY.plusDays(4), "fifth");
+        insert(4, DAY.plusDays(3), "fourth");
+        FlushCountingStream out = new FlushCountingStream();
+        
+        long rows = exportService.exportCsv(null, null, null, null, out);
+        
+        assertThat(rows).isEqualTo(5);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(6).first().isEqualTo(HEADER.strip());
+        assertThat(lines.subList(1, 6)).extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("1", "2", "3", "4", "5");
+        assertThat(lines.get(1)).contains(",,SCHEDULED,");
+        assertThat(lines.get(2)).contains(",\"second, same day\",");
+        // After rows 2 and 4, and once at the end
+        assertThat(out.sizesAtFlush).hasSize(3).isSorted().doesNotHaveDuplicates();
+    }
+    
+    @Test
+    void filtersByDateRangeDoctorAndStatus() {
+        insert(1, DAY, "in range");
+        insert(2, DAY.plusDays(10), "too late");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        long rows = exportService.exportCsv(DAY.minusDays(1), DAY.plusDays(1), 7L, "SCHEDULED", out);
+        
+        assertThat(rows).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith(HEADER).contains("in range");
+    }
+    
+    private void insert(long id, LocalDateTime appointmentDate, String notes) {
+        jdbcTemplate.update("INSERT INTO appointment_history VALUES (?, 1, 'Paciente', 'p@example.com', 7, " +
+                "'Dr. Sete', ?, ?, 'SCHEDULED', ?, ?)", id, appointmentDate, notes, DAY, DAY);
+    }
+    
+    private static class FlushCountingStream extends ByteArrayOutputStream {
+        
+        private final List<Integer> sizesAtFlush = new ArrayList<>();
+        
+        @Override
+        public void flush() {
+            sizesAtFlush.add(size());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.hospital.history.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HistoryCsvWriterTest {
+    
+    @Test
+    void quotesOnlyValuesThatNeedIt() throws Exception {
+        StringWriter out = new StringWriter();
+        HistoryCsvWriter csv = new HistoryCsvWriter(out);
+        
+        csv.writeRow(row("plain", "a,b", "say \"hi\"", "two\nlines", "carriage\rreturn"));
+        
+        assertThat(out).hasToString("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"carriage\rreturn\"\n");
+        assertThat(csv.getRowCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void nullsAreEmptyFieldsAndEmptyStringsStayEmpty() throws Exception {
+        StringWriter out = new StringWriter();
+        HistoryCsvWriter csv = new HistoryCsvWriter(out);
+        
+        csv.writeRow(row(null, "", null));
+        
+        assertThat(out).hasToString(",,\n");
+    }
+    
+    @Test
+    void headerUsesTheColumnLabels() throws Exception {
+        StringWriter out = new StringWriter();
+        HistoryCsvWriter csv = new HistoryCsvWriter(out);
+        ResultSetMetaData metaData = metaData(3);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        when(metaData.getColumnLabel(2)).thenReturn("notes");
+        when(metaData.getColumnLabel(3)).thenReturn("odd,label");
+        
+        csv.writeHeader(metaData);
+        
+        assertThat(out).hasToString("id,notes,\"odd,label\"\n");
+        assertThat(csv.getRowCount()).isZero();
+    }
+    
+    private static ResultSet row(Object... values) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        ResultSetMetaData metaData = metaData(values.length);
+        when(rs.getMetaData()).thenReturn(metaData);
+        for (int i = 0; i < values.length; i++) {
+            when(rs.getObject(i + 1)).thenReturn(values[i]);
+        }
+        return rs;
+    }
+    
+    private static ResultSetMetaData metaData(int columns) throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(columns);
+        return metaData;
+    }
+}
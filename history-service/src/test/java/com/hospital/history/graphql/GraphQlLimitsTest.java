@@ -0,0 +1,147 @@
+package com.hospital.history.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphQlLimitsTest {
+    
+    private static final String ALL_FIELDS = "id patientId patientName patientEmail doctorId doctorName " +
+            "appointmentDate notes status createdAt updatedAt";
+    
+    @Test
+    void fullPageWithEveryFieldFitsTheComplexityLimit() throws IOException {
+        GraphQL graphQl = graphQl(new MaxQueryComplexityInstrumentation(12000,
+                new CostDirectiveComplexityCalculator(1000)));
+        
+        ExecutionResult result = graphQl.execute("{ allAppointments(limit: 1000) { " + ALL_FIELDS + " } }");
+        
+        assertThat(result.getErrors()).isEmpty();
+    }
+    
+    @Test
+    void limitAbovePageSizeCostsNoMoreThanAFullPage() throws IOException {
+        GraphQL graphQl = graphQl(new MaxQueryComplexityInstrumentation(12000,
+                new CostDirectiveComplexityCalculator(1000)));
+        
+        ExecutionResult result = graphQl.execute("{ allAppointments(limit: 1000000) { " + ALL_FIELDS + " } }");
+        
+        assertThat(result.getErrors()).isEmpty();
+    }
+    
+    @Test
+    void queryAboveTheComplexityLimitIsRejected() throws IOException {
+        GraphQL graphQl = graphQl(new MaxQueryComplexityInstrumentation(12000,
+                new CostDirectiveComplexityCalculator(1000)));
+        
+        ExecutionResult result = graphQl.execute("{ a: allAppointments(limit: 1000) { " + ALL_FIELDS + " } " +
+                "b: allAppointments(limit: 1000) { " + ALL_FIELDS + " } }");
+        
+        assertThat(result.getErrors()).isNotEmpty();
+    }
+    
+    @Test
+    void unknownOperationNamesShareTheOtherTagOnceTheLimitIsReached() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GraphQL graphQl = graphQl(new QueryMetricsInstrumentation(registry, List.of("Stats"), 2));
+        
+        for (int i = 0; i < 20; i++) {
+            graphQl.execute(ExecutionInput.newExecutionInput()
+                    .query("query Op" + i + " { appointment(id: 1) { id } }")
+                    .operationName("Op" + i)
+                    .build());
+        }
+        graphQl.execute(ExecutionInput.newExecutionInput()
+                .query("query Stats { appointment(id: 1) { id } }")
+                .operationName("Stats")
+                .build());
+        
+        Set<String> tags = registry.find("graphql.query.execution").timers().stream()
+                .map(timer -> timer.getId().getTag("operation"))
+                .collect(Collectors.toSet());
+        assertThat(tags).containsExactlyInAnyOrder("Op0", "Op1", "other", "Stats");
+    }
+    
+    @Test
+    void documentCacheParsesOnceAndStaysBounded() {
+        CachingPreparsedDocumentProvider provider = new CachingPreparsedDocumentProvider(3);
+        AtomicInteger parses = new AtomicInteger();
+        
+        for (int i = 0; i < 10; i++) {
+            provider.getDocument(ExecutionInput.newExecutionInput().query("{ q0 }").build(), input -> {
+                parses.incrementAndGet();
+                return new PreparsedDocumentEntry(Document.newDocument().build());
+            });
+        }
+        for (int i = 1; i < 10; i++) {
+            provider.getDocument(ExecutionInput.newExecutionInput().query("{ q" + i + " }").build(),
+                    input -> new PreparsedDocumentEntry(Document.newDocument().build()));
+        }
+        
+        assertThat(parses).hasValue(1);
+        assertThat(provider.size()).isLessThanOrEqualTo(3);
+    }
+    
+    @Test
+    void queryTextThatLooksLikeAPersistedIdIsNotServedThePersistedDocument() {
+        CachingPreparsedDocumentProvider provider = new CachingPreparsedDocumentProvider(10);
+        String query = "{ q0 }";
+        String hash = HexFormat.of().formatHex(sha256(query));
+        PreparsedDocumentEntry persisted = new PreparsedDocumentEntry(Document.newDocument().build());
+        PreparsedDocumentEntry byText = new PreparsedDocumentEntry(Document.newDocument().build());
+        
+        provider.getDocument(ExecutionInput.newExecutionInput().query(query)
+                .extensions(Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", hash))).build(),
+                input -> persisted);
+        PreparsedDocumentEntry entry = provider.getDocument(ExecutionInput.newExecutionInput().query(hash).build(),
+                input -> byText);
+        
+        assertThat(entry).isSameAs(byText);
+        assertThat(provider.size()).isEqualTo(2);
+    }
+    
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static GraphQL graphQl(Instrumentation instrumentation) throws IOException {
+        ClassPathResource schemaFile = new ClassPathResource("graphql/schema.graphqls");
+        GraphQLSchema schema;
+        try (InputStreamReader reader = new InputStreamReader(schemaFile.getInputStream(), StandardCharsets.UTF_8)) {
+            schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(reader),
+                    RuntimeWiring.newRuntimeWiring()
+                            .type("Query", query -> query.dataFetcher("allAppointments", env -> List.of()))
+                            .build());
+        }
+        return GraphQL.newGraphQL(schema).instrumentation(instrumentation).build();
+    }
+}
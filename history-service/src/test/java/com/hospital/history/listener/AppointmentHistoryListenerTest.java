@@ -0,0 +1,56 @@
+package com.hospital.history.listener;
+
+import com.hospital.history.event.AppointmentEvent;
+import com.hospital.history.repository.AppointmentHistoryKeyRepository;
+import com.hospital.history.repository.AppointmentHistoryRepository;
+import com.hospital.history.stats.AppointmentStatsAccumulator;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppointmentHistoryListenerTest {
+    
+    private final AppointmentHistoryRepository repository = mock(AppointmentHistoryRepository.class);
+    private final AppointmentHistoryKeyRepository keyRepository = mock(AppointmentHistoryKeyRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final AppointmentStatsAccumulator statsAccumulator = mock(AppointmentStatsAccumulator.class);
+    private final ListenerConcurrencyController concurrencyController = mock(ListenerConcurrencyController.class);
+    private final AppointmentHistoryListener listener = new AppointmentHistoryListener(repository, keyRepository,
+            transactionTemplate, statsAccumulator, concurrencyController);
+    
+    @Test
+    void createdEventThatLosesTheInsertRaceCountsAsSynced() {
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(transactionTemplate).executeWithoutResult(any());
+        when(keyRepository.existsById(42L)).thenReturn(true);
+        
+        listener.handleAppointmentCreated(created(42L));
+        
+        verify(concurrencyController, never()).recordFailure();
+    }
+    
+    @Test
+    void createdEventThatViolatesAnythingElseIsAFailure() {
+        doThrow(new DataIntegrityViolationException("null value in column"))
+                .when(transactionTemplate).executeWithoutResult(any());
+        when(keyRepository.existsById(42L)).thenReturn(false);
+        
+        listener.handleAppointmentCreated(created(42L));
+        
+        verify(concurrencyController).recordFailure();
+    }
+    
+    private static AppointmentEvent created(Long id) {
+        AppointmentEvent event = new AppointmentEvent();
+        event.setAppointmentId(id);
+        event.setEventType("CREATED");
+        return event;
+    }
+}
@@ -0,0 +1,72 @@
+package com.hospital.history.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// The mocked AmqpAdmin stands in for the broker and reports the queue depths
+class ListenerConcurrencyControllerTest {
+    
+    private final RabbitListenerEndpointRegistry endpointRegistry = mock(RabbitListenerEndpointRegistry.class);
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+    
+    @Test
+    void disabledControllerLeavesContainersAsConfigured() {
+        ListenerConcurrencyController controller = controller(false);
+        SimpleMessageListenerContainer container = container("appointment.created.queue");
+        
+        controller.register(container, 1);
+        controller.adjust();
+        
+        verifyNoInteractions(container, amqpAdmin);
+    }
+    
+    @Test
+    void containersNotRegisteredKeepTheirConsumers() {
+        ListenerConcurrencyController controller = controller(true);
+        SimpleMessageListenerContainer registered = container("appointment.created.queue");
+        controller.register(registered, 1);
+        SimpleMessageListenerContainer other = container("other.queue");
+        depth("appointment.created.queue", 500);
+        depth("other.queue", 500);
+        
+        controller.adjust();
+        
+        verify(registered).setConcurrentConsumers(2);
+        verify(other, never()).setConcurrentConsumers(anyInt());
+        verify(other, never()).setPrefetchCount(anyInt());
+    }
+    
+    private ListenerConcurrencyController controller(boolean enabled) {
+        return new ListenerConcurrencyController(endpointRegistry, amqpAdmin, new SimpleMeterRegistry(), enabled,
+                1, 8, 8, 1, 100, 10, 0.5, 10, 200, 0.05);
+    }
+    
+    private SimpleMessageListenerContainer container(String queue) {
+        SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+        when(container.getQueueNames()).thenReturn(new String[] {queue});
+        when(container.isRunning()).thenReturn(true);
+        containers.add(container);
+        when(endpointRegistry.getListenerContainers()).thenReturn(List.copyOf(containers));
+        return container;
+    }
+    
+    private void depth(String queue, int messages) {
+        when(amqpAdmin.getQueueInfo(queue)).thenReturn(new QueueInformation(queue, messages, 1));
+    }
+}
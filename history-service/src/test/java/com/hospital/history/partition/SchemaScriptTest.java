@@ -0,0 +1,63 @@
+package com.hospital.history.partition;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// There is no PostgreSQL in the build, so this only checks the statements Spring hands to the
+// driver; history-migration-check.sh runs the script against a real pre-partitioning table
+class SchemaScriptTest {
+    
+    @Test
+    void doBlocksSurviveTheConfiguredSeparator() throws SQLException {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        String separator = yaml.getObject().getProperty("spring.sql.init.separator");
+        Connection connection = mock(Connection.class);
+        Statement jdbcStatement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(jdbcStatement);
+        
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema-postgresql.sql"));
+        populator.setSeparator(separator);
+        populator.populate(connection);
+        
+        ArgumentCaptor<String> executed = ArgumentCaptor.forClass(String.class);
+        verify(jdbcStatement, atLeastOnce()).execute(executed.capture());
+        List<String> statements = executed.getAllValues();
+        
+        List<String> doBlocks = statements.stream().filter(statement -> statement.startsWith("DO $$")).toList();
+        assertThat(doBlocks).hasSize(2).allSatisfy(block -> assertThat(block).endsWith("END $$"));
+        assertThat(doBlocks.get(0)).contains("RENAME TO appointment_history_unpartitioned");
+        assertThat(doBlocks.get(1)).contains("FROM appointment_history_unpartitioned", "DROP TABLE");
+        
+        // The table is moved aside before the partitioned one is created, and emptied before indexing
+        assertThat(statements.indexOf(doBlocks.get(0)))
+                .isLessThan(indexOf(statements, "CREATE TABLE IF NOT EXISTS appointment_history ("));
+        assertThat(statements.indexOf(doBlocks.get(1)))
+                .isGreaterThan(indexOf(statements, "CREATE TABLE IF NOT EXISTS appointment_history_default"))
+                .isLessThan(indexOf(statements, "CREATE INDEX"));
+        assertThat(statements).noneMatch(statement -> statement.endsWith("^"));
+    }
+    
+    private static int indexOf(List<String> statements, String prefix) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).startsWith(prefix)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No statement starts with " + prefix);
+    }
+}
@@ -0,0 +1,111 @@
+package com.hospital.history.stats;
+
+import com.hospital.history.repository.AppointmentStatisticRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AppointmentStatsAccumulatorTest {
+    
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    
+    private AppointmentStatisticRepository repository;
+    private AppointmentStatsAccumulator accumulator;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(AppointmentStatisticRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any(Consumer.class));
+        accumulator = new AppointmentStatsAccumulator(repository, transactionTemplate);
+    }
+    
+    @Test
+    void flushedCountersAreRemoved() {
+        accumulator.increment(1L, DAY, "SCHEDULED");
+        accumulator.increment(1L, DAY, "SCHEDULED");
+        accumulator.increment(2L, DAY, "CANCELLED");
+        
+        accumulator.flush();
+        
+        verify(repository).addToCount(1L, DAY, "SCHEDULED", 2);
+        verify(repository).addToCount(2L, DAY, "CANCELLED", 1);
+        assertThat(accumulator.size()).isZero();
+    }
+    
+    @Test
+    void failedFlushKeepsCountersForTheNextOne() {
+        doThrow(new IllegalStateException("database down"))
+                .when(repository).addToCount(any(), any(), any(), anyLong());
+        accumulator.increment(1L, DAY, "SCHEDULED");
+        
+        accumulator.flush();
+        
+        assertThat(accumulator.size()).isEqualTo(1);
+    }
+    
+    @Test
+    void countersThatNetToZeroAreRemovedWithoutWriting() {
+        accumulator.increment(1L, DAY, "SCHEDULED");
+        accumulator.flush();
+        accumulator.increment(1L, DAY, "SCHEDULED");
+        accumulator.decrement(1L, DAY, "SCHEDULED");
+        
+        accumulator.flush();
+        
+        verify(repository).addToCount(1L, DAY, "SCHEDULED", 1);
+        assertThat(accumulator.size()).isZero();
+    }
+    
+    @Test
+    void updatesRacingWithFlushesAreAllWritten() throws InterruptedException {
+        AtomicLong written = new AtomicLong();
+        doAnswer(invocation -> written.addAndGet(invocation.getArgument(3)))
+                .when(repository).addToCount(any(), any(), any(), anyLong());
+        int threads = 4;
+        int updates = 20_000;
+        
+        Thread[] updaters = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            // Even threads add, odd ones add and take back, so counters keep netting to zero
+            boolean cancelling = i % 2 == 1;
+            updaters[i] = new Thread(() -> {
+                for (int n = 0; n < updates; n++) {
+                    accumulator.increment(1L, DAY, "SCHEDULED");
+                    if (cancelling) {
+                        accumulator.decrement(1L, DAY, "SCHEDULED");
+                    }
+                }
+            });
+            updaters[i].start();
+        }
+        while (Arrays.stream(updaters).anyMatch(Thread::isAlive)) {
+            accumulator.flush();
+        }
+        for (Thread updater : updaters) {
+            updater.join();
+        }
+        accumulator.flush();
+        
+        assertThat(written.get()).isEqualTo((long) threads / 2 * updates);
+        assertThat(accumulator.size()).isZero();
+    }
+}
@@ -0,0 +1,91 @@
+#!/bin/bash
+
+# Measures what logging costs per request on the scheduling service: the same read requests
+# against the old setup (synchronous console appender, SQL echo on) and the current one (prod
+# profile: async ring buffer, JSON lines, SQL echo off, repeated lines sampled).
+#
+# Usage: ./logging-benchmark.sh [requests]
+#
+# Builds nothing: run mvn package in scheduling-service first. Each variant starts the service
+# on in-memory H2 with tracing off, warms it up, then sends the requests over one keep-alive
+# connection. The log goes to a file, as it would in a container with a log shipper. Every request
+# also pays the BCrypt check of HTTP Basic, so compare the difference between the variants rather
+# than the absolute times.
+
+REQUESTS=${1:-5000}
+WARMUP=1000
+JAR="$(cd "$(dirname "$0")" && pwd)/scheduling-service/target/scheduling-service-1.0.0.jar"
+URL="http://localhost:8080/api/appointments/patient/1"
+AUTH=(-u doctor:doctor123)
+TIMEOUT_SECONDS=120
+COMMON_ARGS=(--management.tracing.enabled=false
+             --scheduling.rate-limit.capacity=1000000 --scheduling.rate-limit.refill-per-second=1000000)
+
+if [ ! -f "$JAR" ]; then
+    echo "❌ $JAR not found, build it first"
+    exit 1
+fi
+
+LOG=$(mktemp)
+CONFIG=$(mktemp)
+SYNC_LOGBACK=$(mktemp --suffix=.xml)
+trap 'rm -f "$LOG" "$CONFIG" "$SYNC_LOGBACK"' EXIT
+
+# The old logging setup: Spring Boot's console appender, written on the request thread
+cat > "$SYNC_LOGBACK" <<'XML'
+<configuration>
+    <include resource="org/springframework/boot/logging/logback/defaults.xml"/>
+    <include resource="org/springframework/boot/logging/logback/console-appender.xml"/>
+    <root level="INFO">
+        <appender-ref ref="CONSOLE"/>
+    </root>
+</configuration>
+XML
+
+# One curl process, one connection: url and output repeated once per request
+requests() {
+    : > "$CONFIG"
+    for i in $(seq 1 "$1"); do
+        printf 'url = "%s"\noutput = "/dev/null"\n' "$URL" >> "$CONFIG"
+    done
+    curl -s "${AUTH[@]}" -K "$CONFIG" -w '%{time_total}\n'
+}
+
+run() {
+    local label=$1
+    shift
+    java -jar "$JAR" "${COMMON_ARGS[@]}" "$@" > "$LOG" 2>&1 &
+    local pid=$!
+
+    local deadline=$((SECONDS + TIMEOUT_SECONDS))
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "${AUTH[@]}" "$URL")" = "200" ]; do
+        if [ $SECONDS -ge $deadline ] || ! kill -0 $pid 2> /dev/null; then
+            echo "❌ $label: service did not become ready, last log lines:"
+            tail -20 "$LOG"
+            kill $pid 2> /dev/null
+            exit 1
+        fi
+        sleep 0.2
+    done
+
+    requests "$WARMUP" > /dev/null
+    local before_bytes
+    before_bytes=$(stat -c %s "$LOG")
+    requests "$REQUESTS" | sort -n | awk -v label="$label" '
+        { t[NR] = $1 * 1000; sum += $1 * 1000 }
+        END { printf "   %-8s %7.3f ms avg  %7.3f ms p50  %7.3f ms p99", label, sum / NR, t[int(NR * 0.5)], t[int(NR * 0.99)] }'
+    # Let the async appender drain before counting bytes
+    sleep 1
+    echo "  $(( ($(stat -c %s "$LOG") - before_bytes) / REQUESTS )) log bytes/request"
+
+    kill $pid
+    wait $pid 2> /dev/null
+    sleep 2
+}
+
+echo "⏱️  GET $URL, $REQUESTS requests per variant"
+run "before" --spring.profiles.active=test --logging.config="$SYNC_LOGBACK"
+# prod after test: keeps the H2 datasource but takes prod's logging and SQL settings; H2 is told
+# to ignore the PostgreSQL driver properties prod sets
+run "after" --spring.profiles.active=test,prod \
+    "--spring.datasource.url=jdbc:h2:mem:testdb;IGNORE_UNKNOWN_SETTINGS=TRUE"
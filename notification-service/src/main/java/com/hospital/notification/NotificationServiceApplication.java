@@ -1,9 +1,14 @@
 package com.hospital.notification;
 
+import com.hospital.notification.config.NotificationRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(NotificationRuntimeHints.class)
 public class NotificationServiceApplication {
     
     public static void main(String[] args) {
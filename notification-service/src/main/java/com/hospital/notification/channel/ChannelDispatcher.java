@@ -0,0 +1,121 @@
+package com.hospital.notification.channel;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs one channel on its own bounded pool behind its own circuit breaker, so a slow or
+// failing channel only ever fills its own queue. Nothing is dropped: a delivery that fails is
+// handed to onFailure, one that cannot be queued is refused so the caller can defer it.
+@Slf4j
+public class ChannelDispatcher {
+    
+    private final NotificationChannel channel;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor executor;
+    private final Consumer<ChannelRetry> onFailure;
+    
+    public ChannelDispatcher(NotificationChannel channel, int poolSize, int queueCapacity,
+                             int failureThreshold, long openMs, Consumer<ChannelRetry> onFailure) {
+        this.channel = channel;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMs);
+        this.onFailure = onFailure;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notify-" + channel.getName() + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    // False when the circuit is open, the queue is full or the dispatcher is shut down
+    public boolean dispatch(NotificationMessage message, int attempt) {
+        if (!circuitBreaker.tryAcquire()) {
+            log.warn("Circuit open for channel {}, deferring {} notification for appointment {}",
+                    channel.getName(), message.eventType(), message.appointmentId());
+            return false;
+        }
+        try {
+            // Carry the correlation id over to the worker thread
+            executor.execute(new Delivery(message, attempt, MDC.getCopyOfContextMap()));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Channel {} queue is full or shut down, deferring {} notification for appointment {}",
+                    channel.getName(), message.eventType(), message.appointmentId());
+            return false;
+        }
+    }
+    
+    private void deliver(NotificationMessage message, int attempt) {
+        try {
+            channel.send(message);
+            circuitBreaker.onSuccess();
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            log.error("Channel {} failed to deliver {} notification for appointment {}",
+                    channel.getName(), message.eventType(), message.appointmentId(), e);
+            try {
+                onFailure.accept(new ChannelRetry(channel.getName(), message, attempt + 1));
+            } catch (Exception deferFailure) {
+                log.error("Could not defer {} notification for appointment {} on channel {}",
+                        message.eventType(), message.appointmentId(), channel.getName(), deferFailure);
+            }
+        }
+    }
+    
+    public String getChannelName() {
+        return channel.getName();
+    }
+    
+    // Returns the deliveries still queued when the timeout ran out, so they can be deferred
+    public List<ChannelRetry> shutdown(long timeoutMs) throws InterruptedException {
+        executor.shutdown();
+        if (executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+            return List.of();
+        }
+        List<ChannelRetry> unsent = new ArrayList<>();
+        for (Runnable task : executor.shutdownNow()) {
+            Delivery delivery = (Delivery) task;
+            unsent.add(new ChannelRetry(channel.getName(), delivery.message, delivery.attempt));
+        }
+        log.warn("Channel {} still had {} queued notifications at shutdown", channel.getName(), unsent.size());
+        return unsent;
+    }
+    
+    private final class Delivery implements Runnable {
+        
+        private final NotificationMessage message;
+        private final int attempt;
+        private final Map<String, String> context;
+        
+        Delivery(NotificationMessage message, int attempt, Map<String, String> context) {
+            this.message = message;
+            this.attempt = attempt;
+            this.context = context;
+        }
+        
+        @Override
+        public void run() {
+            if (context != null) {
+                MDC.setContextMap(context);
+            }
+            try {
+                deliver(message, attempt);
+            } finally {
+                MDC.clear();
+            }
+        }
+    }
+}
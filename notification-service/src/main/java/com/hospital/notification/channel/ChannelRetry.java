@@ -0,0 +1,6 @@
+package com.hospital.notification.channel;
+
+// A delivery one channel has not made yet, parked on the retry queue until it is tried again.
+// The attempt counts the failed or rejected tries so far.
+public record ChannelRetry(String channel, NotificationMessage message, int attempt) {
+}
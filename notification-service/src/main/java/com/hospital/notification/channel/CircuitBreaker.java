@@ -0,0 +1,42 @@
+package com.hospital.notification.channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Opens after failureThreshold consecutive failures and rejects calls for openMs. Once that
+// has passed a single trial call is let through; it closes the breaker or opens it again.
+public class CircuitBreaker {
+    
+    private static final long CLOSED = 0;
+    
+    private final int failureThreshold;
+    private final long openMs;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong(CLOSED);
+    
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+    
+    public boolean tryAcquire() {
+        long until = openUntil.get();
+        if (until == CLOSED) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        // Only the caller that pushes the deadline forward gets the trial call
+        return now >= until && openUntil.compareAndSet(until, now + openMs);
+    }
+    
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        openUntil.set(CLOSED);
+    }
+    
+    public void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(System.currentTimeMillis() + openMs);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hospital.notification.channel;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailChannel implements NotificationChannel {
+    
+    private final JavaMailSender mailSender;
+    
+    @Value("${notification.channels.email.enabled:true}")
+    private boolean enabled;
+    
+    // Off by default: messages are only logged unless SMTP is properly configured
+    @Value("${notification.channels.email.smtp-enabled:false}")
+    private boolean smtpEnabled;
+    
+    @Value("${notification.email.from}")
+    private String fromEmail;
+    
+    @Override
+    public String getName() {
+        return "email";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public void send(NotificationMessage message) {
+        if (!smtpEnabled) {
+            log.info("Notification to {}: {} (appointment {})",
+                    message.recipientEmail(), message.subject(), message.appointmentId());
+            log.debug("Notification body:\n{}", message.body());
+            return;
+        }
+        
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setTo(message.recipientEmail());
+        mailMessage.setSubject(message.subject());
+        mailMessage.setText(message.body());
+        mailMessage.setFrom(fromEmail);
+        mailSender.send(mailMessage);
+        log.debug("Email sent successfully to: {}", message.recipientEmail());
+    }
+}
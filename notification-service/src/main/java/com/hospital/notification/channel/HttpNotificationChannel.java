@@ -0,0 +1,37 @@
+package com.hospital.notification.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+// Base for channels that deliver by POSTing JSON to a gateway
+public abstract class HttpNotificationChannel implements NotificationChannel {
+    
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    
+    protected HttpNotificationChannel(ObjectMapper objectMapper, long connectTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+    
+    protected void post(String url, Object payload, long timeoutMs) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                .build();
+        
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(getName() + " gateway " + url + " returned HTTP " + response.statusCode());
+        }
+    }
+}
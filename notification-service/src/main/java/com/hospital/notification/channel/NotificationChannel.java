@@ -0,0 +1,11 @@
+package com.hospital.notification.channel;
+
+// A delivery channel. Implementations may block; each channel runs on its own worker pool.
+public interface NotificationChannel {
+    
+    String getName();
+    
+    boolean isEnabled();
+    
+    void send(NotificationMessage message) throws Exception;
+}
@@ -0,0 +1,10 @@
+package com.hospital.notification.channel;
+
+public record NotificationMessage(
+        String eventType,
+        Long appointmentId,
+        Long patientId,
+        String recipientEmail,
+        String subject,
+        String body) {
+}
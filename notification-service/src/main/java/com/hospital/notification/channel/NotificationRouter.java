@@ -0,0 +1,134 @@
+package com.hospital.notification.channel;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fans a notification out to the channels configured for its event type. Dispatching only
+// enqueues, so the RabbitMQ consumer never waits on a channel. A channel that cannot take or
+// deliver a notification gets it back later through the retry queues: the wait queue holds it
+// for the retry delay, then dead-letters it to the retry queue; after max-attempts it is parked
+// on the dead-letter queue instead.
+@Component
+@Slf4j
+public class NotificationRouter {
+    
+    private final Map<String, ChannelDispatcher> dispatchers = new HashMap<>();
+    private final Map<String, List<ChannelDispatcher>> routes = new HashMap<>();
+    private final RabbitTemplate rabbitTemplate;
+    
+    @Value("${notification.channels.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+    
+    @Value("${notification.channels.retry.wait-queue}")
+    private String waitQueue;
+    
+    @Value("${notification.channels.retry.dead-queue}")
+    private String deadQueue;
+    
+    @Value("${notification.channels.retry.max-attempts:10}")
+    private int maxAttempts;
+    
+    public NotificationRouter(List<NotificationChannel> channels, Environment environment, RabbitTemplate rabbitTemplate,
+                              @Value("${notification.routing.created:email}") String[] created,
+                              @Value("${notification.routing.updated:email}") String[] updated,
+                              @Value("${notification.routing.cancelled:email}") String[] cancelled,
+                              @Value("${notification.routing.reminder:email}") String[] reminder) {
+        this.rabbitTemplate = rabbitTemplate;
+        for (NotificationChannel channel : channels) {
+            if (!channel.isEnabled()) {
+                continue;
+            }
+            String prefix = "notification.channels." + channel.getName() + ".";
+            dispatchers.put(channel.getName(), new ChannelDispatcher(channel,
+                    environment.getProperty(prefix + "pool-size", Integer.class, 2),
+                    environment.getProperty(prefix + "queue-capacity", Integer.class, 1000),
+                    environment.getProperty(prefix + "failure-threshold", Integer.class, 5),
+                    environment.getProperty(prefix + "open-ms", Long.class, 30000L),
+                    this::defer));
+        }
+        
+        routes.put("CREATED", resolve(created));
+        routes.put("UPDATED", resolve(updated));
+        routes.put("CANCELLED", resolve(cancelled));
+        routes.put("REMINDER", resolve(reminder));
+        log.info("Notification routes: {}", routes.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue().stream().map(ChannelDispatcher::getChannelName).toList())
+                .toList());
+    }
+    
+    public void route(NotificationMessage message) {
+        List<ChannelDispatcher> targets = routes.get(message.eventType());
+        if (targets == null || targets.isEmpty()) {
+            log.warn("No notification channels routed for event type {}", message.eventType());
+            return;
+        }
+        for (ChannelDispatcher dispatcher : targets) {
+            dispatch(dispatcher, message, 0);
+        }
+    }
+    
+    // A delivery coming back from the retry queue, for its one channel only
+    public void redeliver(ChannelRetry retry) {
+        ChannelDispatcher dispatcher = dispatchers.get(retry.channel());
+        if (dispatcher == null) {
+            log.warn("Channel {} is unknown or disabled, parking retried {} notification for appointment {}",
+                    retry.channel(), retry.message().eventType(), retry.message().appointmentId());
+            rabbitTemplate.convertAndSend(deadQueue, retry);
+            return;
+        }
+        dispatch(dispatcher, retry.message(), retry.attempt());
+    }
+    
+    private void dispatch(ChannelDispatcher dispatcher, NotificationMessage message, int attempt) {
+        if (!dispatcher.dispatch(message, attempt)) {
+            defer(new ChannelRetry(dispatcher.getChannelName(), message, attempt + 1));
+        }
+    }
+    
+    // Throws if the broker cannot take it, so the caller's delivery is redelivered instead
+    private void defer(ChannelRetry retry) {
+        if (retry.attempt() >= maxAttempts) {
+            log.error("Giving up on {} notification for appointment {} on channel {} after {} attempts",
+                    retry.message().eventType(), retry.message().appointmentId(), retry.channel(), retry.attempt());
+            rabbitTemplate.convertAndSend(deadQueue, retry);
+            return;
+        }
+        rabbitTemplate.convertAndSend(waitQueue, retry);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ChannelDispatcher dispatcher : dispatchers.values()) {
+            for (ChannelRetry unsent : dispatcher.shutdown(shutdownTimeoutMs)) {
+                try {
+                    rabbitTemplate.convertAndSend(waitQueue, unsent);
+                } catch (Exception e) {
+                    log.error("Could not defer {} notification for appointment {} on channel {} at shutdown",
+                            unsent.message().eventType(), unsent.message().appointmentId(), unsent.channel(), e);
+                }
+            }
+        }
+    }
+    
+    private List<ChannelDispatcher> resolve(String[] channelNames) {
+        List<ChannelDispatcher> resolved = new ArrayList<>();
+        for (String name : channelNames) {
+            ChannelDispatcher dispatcher = dispatchers.get(name.trim());
+            if (dispatcher == null) {
+                log.warn("Notification channel {} is unknown or disabled, leaving it out of the route", name.trim());
+                continue;
+            }
+            resolved.add(dispatcher);
+        }
+        return resolved;
+    }
+}
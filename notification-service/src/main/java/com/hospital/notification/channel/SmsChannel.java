@@ -0,0 +1,49 @@
+package com.hospital.notification.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+@Component
+public class SmsChannel extends HttpNotificationChannel {
+    
+    @Value("${notification.channels.sms.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${notification.channels.sms.url:http://localhost:9091/sms}")
+    private String url;
+    
+    @Value("${notification.channels.sms.timeout-ms:5000}")
+    private long timeoutMs;
+    
+    @Value("${notification.channels.sms.max-length:160}")
+    private int maxLength;
+    
+    public SmsChannel(ObjectMapper objectMapper,
+                      @Value("${notification.channels.sms.connect-timeout-ms:2000}") long connectTimeoutMs) {
+        super(objectMapper, connectTimeoutMs);
+    }
+    
+    @Override
+    public String getName() {
+        return "sms";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public void send(NotificationMessage message) throws IOException, InterruptedException {
+        // Events carry no phone number, the gateway looks it up by patient id
+        String text = message.subject() + " - appointment " + message.appointmentId();
+        if (text.length() > maxLength) {
+            text = text.substring(0, maxLength);
+        }
+        post(url, Map.of("patientId", message.patientId(), "text", text), timeoutMs);
+    }
+}
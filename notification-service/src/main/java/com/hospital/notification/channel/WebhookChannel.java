@@ -0,0 +1,40 @@
+package com.hospital.notification.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class WebhookChannel extends HttpNotificationChannel {
+    
+    @Value("${notification.channels.webhook.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${notification.channels.webhook.url:http://localhost:9092/notifications}")
+    private String url;
+    
+    @Value("${notification.channels.webhook.timeout-ms:5000}")
+    private long timeoutMs;
+    
+    public WebhookChannel(ObjectMapper objectMapper,
+                          @Value("${notification.channels.webhook.connect-timeout-ms:2000}") long connectTimeoutMs) {
+        super(objectMapper, connectTimeoutMs);
+    }
+    
+    @Override
+    public String getName() {
+        return "webhook";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public void send(NotificationMessage message) throws IOException, InterruptedException {
+        post(url, message, timeoutMs);
+    }
+}
@@ -0,0 +1,34 @@
+package com.hospital.notification.config;
+
+import com.hospital.notification.channel.ChannelRetry;
+import com.hospital.notification.channel.NotificationMessage;
+import com.hospital.notification.event.AppointmentEvent;
+import com.hospital.notification.logging.RepeatedMessageFilter;
+import com.hospital.notification.reminder.ReminderJournal;
+import net.logstash.logback.appender.LoggingEventAsyncDisruptorAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// Native image hints for what the AOT engine cannot see. Lombok only generates code at compile
+// time and needs nothing.
+public class NotificationRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Bound by Jackson: AMQP payloads, webhook bodies, channel retries and reminder journal lines
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                AppointmentEvent.class, NotificationMessage.class, ChannelRetry.class, ReminderJournal.Entry.class);
+        
+        // Created and configured through setters by logback-spring.xml
+        hints.reflection()
+                .registerType(RepeatedMessageFilter.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LoggingEventAsyncDisruptorAppender.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LogstashEncoder.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+}
@@ -1,15 +1,121 @@
 package com.hospital.notification.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.notification.listener.ListenerConcurrencyController;
+import org.slf4j.MDC;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMQConfig {
     
+    public static final String CORRELATION_ID_HEADER = "X-Correlation-Id";
+    public static final String CORRELATION_ID_MDC_KEY = "correlationId";
+    
+    @Value("${rabbitmq.exchange.name}")
+    private String exchangeName;
+    
+    @Value("${rabbitmq.queue.reminders}")
+    private String remindersQueue;
+    
+    @Value("${notification.channels.retry.wait-queue}")
+    private String retryWaitQueue;
+    
+    @Value("${notification.channels.retry.queue}")
+    private String retryQueue;
+    
+    @Value("${notification.channels.retry.dead-queue}")
+    private String deadQueue;
+    
+    @Value("${notification.channels.retry.delay-ms:30000}")
+    private int retryDelayMs;
+    
+    @Value("${rabbitmq.queue.created-urgent}")
+    private String createdUrgentQueue;
+    
+    @Value("${rabbitmq.queue.updated-urgent}")
+    private String updatedUrgentQueue;
+    
+    @Value("${rabbitmq.listener.adaptive.urgent-weight:4}")
+    private int urgentWeight;
+    
+    // The application's ObjectMapper: ISO-8601 dates and the Blackbird module
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+    
+    @Bean
+    public TopicExchange exchange() {
+        return new TopicExchange(exchangeName);
+    }
+    
+    // Every appointment event, both lanes, for the reminder timers. With a single active
+    // consumer only one instance receives them even if two start their listener.
+    @Bean
+    public Queue remindersQueue() {
+        return QueueBuilder.durable(remindersQueue).singleActiveConsumer().build();
+    }
+    
+    @Bean
+    public Binding remindersBinding() {
+        return BindingBuilder.bind(remindersQueue()).to(exchange()).with("appointment.#");
+    }
+    
+    // Deliveries a channel could not make wait here for the retry delay, then expire into the
+    // retry queue through the default exchange
+    @Bean
+    public Queue retryWaitQueue() {
+        return QueueBuilder.durable(retryWaitQueue)
+                .ttl(retryDelayMs)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(retryQueue)
+                .build();
+    }
+    
+    @Bean
+    public Queue retryQueue() {
+        return QueueBuilder.durable(retryQueue).build();
+    }
+    
+    @Bean
+    public Queue deadQueue() {
+        return QueueBuilder.durable(deadQueue).build();
+    }
+    
     @Bean
-    public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public ContainerCustomizer<SimpleMessageListenerContainer> listenerContainerCustomizer(
+            ListenerConcurrencyController concurrencyController) {
+        return container -> {
+            // Consumers and prefetch are sized at runtime, urgent lanes get the larger share.
+            // The reminder and retry listeners keep their fixed consumers.
+            String queue = container.getQueueNames()[0];
+            if (!queue.equals(remindersQueue) && !queue.equals(retryQueue)) {
+                boolean urgent = queue.equals(createdUrgentQueue) || queue.equals(updatedUrgentQueue);
+                concurrencyController.register(container, urgent ? urgentWeight : 1);
+            }
+            // Continues the publisher's trace from the message headers
+            container.setObservationEnabled(true);
+            // Each delivery replaces the previous message's correlation id on the consumer thread
+            container.setAfterReceivePostProcessors(message -> {
+                Object correlationId = message.getMessageProperties().getHeader(CORRELATION_ID_HEADER);
+                if (correlationId != null) {
+                    MDC.put(CORRELATION_ID_MDC_KEY, correlationId.toString());
+                } else {
+                    MDC.remove(CORRELATION_ID_MDC_KEY);
+                }
+                return message;
+            });
+        };
     }
 }
@@ -4,6 +4,7 @@ import com.hospital.notification.event.AppointmentEvent;
 import com.hospital.notification.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
@@ -13,23 +14,39 @@ import org.springframework.stereotype.Component;
 public class AppointmentEventListener {
     
     private final NotificationService notificationService;
+    private final ListenerConcurrencyController concurrencyController;
     
     @RabbitListener(queues = "${rabbitmq.queue.created}")
     public void handleAppointmentCreated(AppointmentEvent event) {
-        log.info("Received appointment created event: {}", event.getAppointmentId());
+        log.debug("Received appointment created event: {}", event.getAppointmentId());
         
         try {
             notificationService.sendAppointmentCreatedNotification(event);
-            log.info("Successfully processed appointment created event: {}", event.getAppointmentId());
+            log.debug("Successfully processed appointment created event: {}", event.getAppointmentId());
+        } catch (AmqpException e) {
+            // A channel's share could not be parked on the retry queue: let the broker redeliver
+            throw e;
         } catch (Exception e) {
             log.error("Error processing appointment created event: {}", event.getAppointmentId(), e);
+            concurrencyController.recordFailure();
             // In a real system, you might want to send this to a dead-letter queue
         }
     }
     
+    // Urgent lanes: same handling, own containers so they never wait behind the bulk queues
+    @RabbitListener(queues = "${rabbitmq.queue.created-urgent}")
+    public void handleUrgentAppointmentCreated(AppointmentEvent event) {
+        handleAppointmentCreated(event);
+    }
+    
+    @RabbitListener(queues = "${rabbitmq.queue.updated-urgent}")
+    public void handleUrgentAppointmentUpdated(AppointmentEvent event) {
+        handleAppointmentUpdated(event);
+    }
+    
     @RabbitListener(queues = "${rabbitmq.queue.updated}")
     public void handleAppointmentUpdated(AppointmentEvent event) {
-        log.info("Received appointment updated event: {}", event.getAppointmentId());
+        log.debug("Received appointment updated event: {}", event.getAppointmentId());
         
         try {
             if ("CANCELLED".equals(event.getEventType())) {
@@ -37,9 +54,12 @@ public class AppointmentEventListener {
             } else {
                 notificationService.sendAppointmentUpdatedNotification(event);
             }
-            log.info("Successfully processed appointment updated event: {}", event.getAppointmentId());
+            log.debug("Successfully processed appointment updated event: {}", event.getAppointmentId());
+        } catch (AmqpException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error processing appointment updated event: {}", event.getAppointmentId(), e);
+            concurrencyController.recordFailure();
             // In a real system, you might want to send this to a dead-letter queue
         }
     }
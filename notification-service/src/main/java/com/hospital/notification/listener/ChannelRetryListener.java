@@ -0,0 +1,24 @@
+package com.hospital.notification.listener;
+
+import com.hospital.notification.channel.ChannelRetry;
+import com.hospital.notification.channel.NotificationRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+// Deliveries coming back from the wait queue, tried again on their one channel
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChannelRetryListener {
+    
+    private final NotificationRouter notificationRouter;
+    
+    @RabbitListener(queues = "${notification.channels.retry.queue}")
+    public void handleRetry(ChannelRetry retry) {
+        log.debug("Retrying {} notification for appointment {} on channel {} (attempt {})",
+                retry.message().eventType(), retry.message().appointmentId(), retry.channel(), retry.attempt() + 1);
+        notificationRouter.redeliver(retry);
+    }
+}
@@ -0,0 +1,34 @@
+package com.hospital.notification.listener;
+
+import com.hospital.notification.event.AppointmentEvent;
+import com.hospital.notification.reminder.ReminderScheduler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+// Keeps the reminder timers in step with the appointments. The queue receives every lane in
+// publish order and has a single active consumer; the container is started by ReminderScheduler
+// on the instance holding the reminder lock. Errors propagate so the event is redelivered.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReminderEventListener {
+    
+    private final ReminderScheduler reminderScheduler;
+    
+    @RabbitListener(id = ReminderScheduler.LISTENER_ID, queues = "${rabbitmq.queue.reminders}",
+            autoStartup = "false", concurrency = "1")
+    public void handleAppointmentEvent(AppointmentEvent event) {
+        log.debug("Received {} event for the reminders of appointment {}", event.getEventType(), event.getAppointmentId());
+        
+        if ("CANCELLED".equals(event.getEventType())) {
+            reminderScheduler.cancel(event);
+        } else if (event.getStatus() == null || "SCHEDULED".equals(event.getStatus())) {
+            reminderScheduler.schedule(event);
+        } else {
+            // COMPLETED, CANCELLED or NO_SHOW: nothing left to remind about
+            reminderScheduler.cancel(event);
+        }
+    }
+}
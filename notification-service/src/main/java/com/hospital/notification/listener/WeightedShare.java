@@ -0,0 +1,35 @@
+package com.hospital.notification.listener;
+
+// Weighted max-min fair split of a consumer budget between listeners. Every listener keeps its
+// minimum; the rest goes one consumer at a time to the listener with the lowest share per weight
+// that still wants more. Listeners that want less leave their share to the others, so a busy lane
+// only gives up consumers while a heavier lane actually needs them.
+public final class WeightedShare {
+    
+    private WeightedShare() {
+    }
+    
+    public static int[] allocate(int budget, int minimum, int[] demand, int[] weight) {
+        int[] allocation = new int[demand.length];
+        int remaining = budget;
+        for (int i = 0; i < demand.length; i++) {
+            allocation[i] = Math.min(minimum, demand[i]);
+            remaining -= allocation[i];
+        }
+        while (remaining > 0) {
+            int next = -1;
+            for (int i = 0; i < demand.length; i++) {
+                if (allocation[i] < demand[i] && (next < 0
+                        || (long) allocation[i] * weight[next] < (long) allocation[next] * weight[i])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            allocation[next]++;
+            remaining--;
+        }
+        return allocation;
+    }
+}
@@ -0,0 +1,52 @@
+package com.hospital.notification.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lets each log statement (keyed by its format string) through at most allowedPerWindow
+// times per window. Unlike DuplicateMessageFilter it never suppresses WARN or ERROR.
+public class RepeatedMessageFilter extends TurboFilter {
+    
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private int allowedPerWindow = 20;
+    private long windowMs = 1000;
+    
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (format == null || level.isGreaterOrEqual(Level.WARN) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Window window = windows.computeIfAbsent(format, key -> new Window());
+        return window.tryAcquire(System.currentTimeMillis() / windowMs, allowedPerWindow)
+                ? FilterReply.NEUTRAL
+                : FilterReply.DENY;
+    }
+    
+    public void setAllowedPerWindow(int allowedPerWindow) {
+        this.allowedPerWindow = allowedPerWindow;
+    }
+    
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+    
+    private static final class Window {
+        
+        private long index = -1;
+        private int count;
+        
+        synchronized boolean tryAcquire(long currentIndex, int allowed) {
+            if (currentIndex != index) {
+                index = currentIndex;
+                count = 0;
+            }
+            return ++count <= allowed;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.hospital.notification.reminder;
+
+import java.util.function.Consumer;
+
+// Hashed hierarchical timing wheel. Each level has wheelSize buckets of tickMs; timers too far
+// out for a level go to a coarser overflow wheel and cascade down as the clock reaches them.
+// A timer fires on the tick that covers its expiration. Adding and cancelling are O(1);
+// advancing costs one bucket per elapsed tick. Not thread-safe.
+public class HierarchicalTimingWheel<T> {
+    
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final Bucket<T>[] buckets;
+    private long currentTime;
+    private HierarchicalTimingWheel<T> overflowWheel;
+    
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket<>();
+        }
+        this.currentTime = startMs - (startMs % tickMs);
+    }
+    
+    // Returns false if the timer is already due; the caller should run it right away
+    public boolean add(Timer<T> timer) {
+        if (timer.expirationMs < currentTime + tickMs) {
+            return false;
+        }
+        if (timer.expirationMs < currentTime + interval) {
+            buckets[(int) ((timer.expirationMs / tickMs) % wheelSize)].add(timer);
+            return true;
+        }
+        if (overflowWheel == null) {
+            overflowWheel = new HierarchicalTimingWheel<>(interval, wheelSize, currentTime);
+        }
+        return overflowWheel.add(timer);
+    }
+    
+    // Moves the clock to nowMs and hands every timer that became due to the consumer
+    public void advance(long nowMs, Consumer<T> expired) {
+        advance(nowMs, this, expired);
+    }
+    
+    private void advance(long nowMs, HierarchicalTimingWheel<T> root, Consumer<T> expired) {
+        while (currentTime + tickMs <= nowMs) {
+            currentTime += tickMs;
+            Bucket<T> bucket = buckets[(int) ((currentTime / tickMs) % wheelSize)];
+            Timer<T> timer;
+            while ((timer = bucket.poll()) != null) {
+                // Re-adding through the finest wheel either fires the timer or moves it down a level
+                if (!root.add(timer)) {
+                    expired.accept(timer.payload);
+                }
+            }
+            if (overflowWheel != null) {
+                overflowWheel.advance(currentTime, root, expired);
+            }
+        }
+    }
+    
+    public static final class Timer<T> {
+        
+        private final long expirationMs;
+        private final T payload;
+        private Bucket<T> bucket;
+        private Timer<T> prev;
+        private Timer<T> next;
+        
+        public Timer(long expirationMs, T payload) {
+            this.expirationMs = expirationMs;
+            this.payload = payload;
+        }
+        
+        public long getExpirationMs() {
+            return expirationMs;
+        }
+        
+        public T getPayload() {
+            return payload;
+        }
+        
+        public void cancel() {
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+        }
+    }
+    
+    // Intrusive doubly linked list, so a timer can unlink itself without a search
+    private static final class Bucket<T> {
+        
+        private final Timer<T> root = new Timer<>(-1, null);
+        
+        Bucket() {
+            root.next = root;
+            root.prev = root;
+        }
+        
+        void add(Timer<T> timer) {
+            timer.bucket = this;
+            timer.next = root;
+            timer.prev = root.prev;
+            root.prev.next = timer;
+            root.prev = timer;
+        }
+        
+        void remove(Timer<T> timer) {
+            timer.prev.next = timer.next;
+            timer.next.prev = timer.prev;
+            timer.next = null;
+            timer.prev = null;
+            timer.bucket = null;
+        }
+        
+        Timer<T> poll() {
+            Timer<T> first = root.next;
+            if (first == root) {
+                return null;
+            }
+            remove(first);
+            return first;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.hospital.notification.reminder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.notification.event.AppointmentEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Append-only log of reminder changes, one JSON entry per line. Replaying it rebuilds the
+// pending reminders after a restart; compaction rewrites it with only the live entries.
+@Slf4j
+public class ReminderJournal {
+    
+    public static final String SCHEDULE = "SCHEDULE";
+    public static final String CANCEL = "CANCEL";
+    public static final String FIRED = "FIRED";
+    
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private BufferedWriter writer;
+    private long entryCount;
+    
+    public ReminderJournal(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+    
+    public void replay(Consumer<Entry> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                entryCount++;
+                try {
+                    consumer.accept(objectMapper.readValue(line, Entry.class));
+                } catch (IOException e) {
+                    // A crash mid-write can leave a truncated last line
+                    log.warn("Skipping unreadable reminder journal entry: {}", line);
+                }
+            }
+        }
+    }
+    
+    public void open() throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+    
+    public void append(Entry entry) throws IOException {
+        writer.write(objectMapper.writeValueAsString(entry));
+        writer.newLine();
+        writer.flush();
+        entryCount++;
+    }
+    
+    public void rewrite(Collection<Entry> entries) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries) {
+                out.write(objectMapper.writeValueAsString(entry));
+                out.newLine();
+            }
+        }
+        close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+        entryCount = entries.size();
+    }
+    
+    public long getEntryCount() {
+        return entryCount;
+    }
+    
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+    
+    public record Entry(String type, Long appointmentId, AppointmentEvent event, List<Integer> offsetsMinutes) {
+    }
+}
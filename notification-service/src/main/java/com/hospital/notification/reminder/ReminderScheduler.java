@@ -0,0 +1,486 @@
+package com.hospital.notification.reminder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.notification.event.AppointmentEvent;
+import com.hospital.notification.service.NotificationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reminder timers for the whole deployment run on one instance: the one holding the lock file
+// next to the journal, which therefore has to sit on storage all instances share. That instance
+// replays the journal and starts the reminder listener; the others retry the lock every tick and
+// take over, journal and queued events included, when the holder goes away. A consumer on the
+// reminders queue while the lock is free means the lock file is not shared: startup fails, and a
+// later instance that still gets there stays passive. Reminders are sent on their own threads, so
+// a slow channel does not hold up the wheel.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReminderScheduler {
+    
+    public static final String LISTENER_ID = "reminders";
+    
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    
+    @Value("${rabbitmq.queue.reminders}")
+    private String remindersQueue;
+    
+    @Value("${notification.reminders.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${notification.reminders.offsets-minutes:1440,120}")
+    private int[] offsetsMinutes;
+    
+    @Value("${notification.reminders.tick-ms:1000}")
+    private long tickMs;
+    
+    @Value("${notification.reminders.wheel-size:60}")
+    private int wheelSize;
+    
+    @Value("${notification.reminders.journal-path:./reminders/reminders.journal}")
+    private String journalPath;
+    
+    @Value("${notification.reminders.compact-min-entries:10000}")
+    private long compactMinEntries;
+    
+    @Value("${notification.reminders.retry-ms:60000}")
+    private long retryMs;
+    
+    @Value("${notification.reminders.tombstone-retention-hours:24}")
+    private long tombstoneRetentionHours;
+    
+    @Value("${notification.reminders.sender-threads:2}")
+    private int senderThreads;
+    
+    @Value("${notification.reminders.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+    
+    private final Map<Long, PendingAppointment> pending = new HashMap<>();
+    // Tombstones: the event that cancelled an appointment, whose version later events must exceed
+    private final Map<Long, AppointmentEvent> cancelled = new HashMap<>();
+    private HierarchicalTimingWheel<Reminder> wheel;
+    private ReminderJournal journal;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private ExecutorService sender;
+    private boolean conflictLogged;
+    
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path lockPath = Paths.get(journalPath + ".lock");
+        Files.createDirectories(lockPath.toAbsolutePath().getParent());
+        lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (isLockFree() && remindersConsumers() > 0) {
+            lockChannel.close();
+            throw new IllegalStateException("The reminders queue is consumed while the lock " + lockPath.toAbsolutePath()
+                    + " is free: notification.reminders.journal-path must be on storage shared by all instances");
+        }
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "reminder-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public synchronized boolean isActive() {
+        return lock != null;
+    }
+    
+    // Takes the lock if it is free; the lock is held until shutdown or the process dies
+    synchronized boolean tryActivate() throws IOException {
+        if (lock != null) {
+            return true;
+        }
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another scheduler in this JVM
+            lock = null;
+        }
+        if (lock == null) {
+            return false;
+        }
+        // The lock was free, so whoever consumes the queue holds another lock file; unknown while
+        // the broker is unreachable, so wait for the next tick
+        int consumers = remindersConsumers();
+        if (consumers != 0) {
+            lock.release();
+            lock = null;
+            if (consumers > 0 && !conflictLogged) {
+                log.error("The reminders queue is consumed while the reminder lock was free; "
+                        + "notification.reminders.journal-path must be on storage shared by all instances");
+                conflictLogged = true;
+            }
+            return false;
+        }
+        restore();
+        MessageListenerContainer listener = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (listener != null) {
+            listener.start();
+        }
+        log.info("Holding the reminder lock, reminders run on this instance");
+        return true;
+    }
+    
+    private void restore() throws IOException {
+        pending.clear();
+        cancelled.clear();
+        wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        journal = new ReminderJournal(Paths.get(journalPath), objectMapper);
+        
+        // Rebuild the pending set first, then arm the wheel once with the final state
+        Map<Long, ReminderJournal.Entry> restored = new LinkedHashMap<>();
+        journal.replay(entry -> {
+            switch (entry.type()) {
+                case ReminderJournal.SCHEDULE -> {
+                    restored.put(entry.appointmentId(), entry);
+                    cancelled.remove(entry.appointmentId());
+                }
+                case ReminderJournal.CANCEL -> {
+                    restored.remove(entry.appointmentId());
+                    // Entries written before tombstones carry no event
+                    if (entry.event() != null) {
+                        cancelled.put(entry.appointmentId(), entry.event());
+                    }
+                }
+                case ReminderJournal.FIRED -> {
+                    ReminderJournal.Entry scheduled = restored.get(entry.appointmentId());
+                    if (scheduled != null) {
+                        List<Integer> remaining = new ArrayList<>(scheduled.offsetsMinutes());
+                        remaining.removeAll(entry.offsetsMinutes());
+                        restored.put(entry.appointmentId(), new ReminderJournal.Entry(
+                                ReminderJournal.SCHEDULE, entry.appointmentId(), scheduled.event(), remaining));
+                    }
+                }
+                default -> log.warn("Unknown reminder journal entry type: {}", entry.type());
+            }
+        });
+        journal.open();
+        
+        long now = System.currentTimeMillis();
+        List<Reminder> missed = new ArrayList<>();
+        for (ReminderJournal.Entry entry : restored.values()) {
+            long appointmentMs = toEpochMilli(entry.event());
+            if (appointmentMs <= now) {
+                continue;
+            }
+            PendingAppointment appointment = new PendingAppointment(entry.event());
+            for (int offset : entry.offsetsMinutes()) {
+                Reminder reminder = new Reminder(entry.appointmentId(), offset);
+                HierarchicalTimingWheel.Timer<Reminder> timer =
+                        new HierarchicalTimingWheel.Timer<>(appointmentMs - offset * 60_000L, reminder);
+                appointment.timers.put(offset, timer);
+                if (!wheel.add(timer)) {
+                    // Came due while the service was down, the appointment itself is still ahead
+                    missed.add(reminder);
+                }
+            }
+            pending.put(entry.appointmentId(), appointment);
+        }
+        for (Reminder reminder : missed) {
+            send(reminder);
+        }
+        compact();
+        log.info("Restored {} appointments with pending reminders", pending.size());
+    }
+    
+    public synchronized void schedule(AppointmentEvent event) {
+        if (!enabled || event.getAppointmentId() == null || event.getAppointmentDate() == null) {
+            return;
+        }
+        requireActive();
+        AppointmentEvent tombstone = cancelled.get(event.getAppointmentId());
+        if (tombstone != null && event.getVersion() != null && event.getVersion() <= tombstone.getVersion()) {
+            log.debug("Ignoring version {} of cancelled appointment {}", event.getVersion(), event.getAppointmentId());
+            return;
+        }
+        // An older update from the bulk lane must not replace what the urgent lane already delivered
+        PendingAppointment current = pending.get(event.getAppointmentId());
+        if (current != null && event.getVersion() != null && current.event.getVersion() != null
+                && event.getVersion() < current.event.getVersion()) {
+            log.debug("Ignoring stale version {} of appointment {}", event.getVersion(), event.getAppointmentId());
+            return;
+        }
+        cancelTimers(event.getAppointmentId());
+        
+        long now = System.currentTimeMillis();
+        long appointmentMs = toEpochMilli(event);
+        PendingAppointment appointment = new PendingAppointment(event);
+        for (int offset : offsetsMinutes) {
+            HierarchicalTimingWheel.Timer<Reminder> timer = new HierarchicalTimingWheel.Timer<>(
+                    appointmentMs - offset * 60_000L, new Reminder(event.getAppointmentId(), offset));
+            // Reminders whose time has already passed at booking are not sent
+            if (timer.getExpirationMs() > now && wheel.add(timer)) {
+                appointment.timers.put(offset, timer);
+            }
+        }
+        
+        if (appointment.timers.isEmpty()) {
+            if (pending.remove(event.getAppointmentId()) != null) {
+                append(new ReminderJournal.Entry(ReminderJournal.CANCEL, event.getAppointmentId(), null, null));
+            }
+            return;
+        }
+        pending.put(event.getAppointmentId(), appointment);
+        cancelled.remove(event.getAppointmentId());
+        append(new ReminderJournal.Entry(ReminderJournal.SCHEDULE, event.getAppointmentId(), event,
+                new ArrayList<>(appointment.timers.keySet())));
+        log.debug("Scheduled reminders {} for appointment {}", appointment.timers.keySet(), event.getAppointmentId());
+    }
+    
+    // Leaves a tombstone when the event is versioned, so an older event still queued in the other
+    // lane cannot bring the reminders back, also not after a restart
+    public synchronized void cancel(AppointmentEvent event) {
+        Long appointmentId = event.getAppointmentId();
+        if (!enabled || appointmentId == null) {
+            return;
+        }
+        requireActive();
+        PendingAppointment current = pending.get(appointmentId);
+        AppointmentEvent latest = current != null ? current.event : cancelled.get(appointmentId);
+        if (latest != null && event.getVersion() != null && latest.getVersion() != null
+                && event.getVersion() < latest.getVersion()) {
+            log.debug("Ignoring stale version {} of appointment {}", event.getVersion(), appointmentId);
+            return;
+        }
+        
+        boolean hadTimers = cancelTimers(appointmentId);
+        if (event.getVersion() != null && event.getAppointmentDate() != null) {
+            cancelled.put(appointmentId, event);
+            append(new ReminderJournal.Entry(ReminderJournal.CANCEL, appointmentId, event, null));
+        } else if (hadTimers) {
+            append(new ReminderJournal.Entry(ReminderJournal.CANCEL, appointmentId, null, null));
+        }
+        if (hadTimers) {
+            log.debug("Cancelled reminders for appointment {}", appointmentId);
+        }
+    }
+    
+    synchronized boolean hasReminders(Long appointmentId) {
+        return pending.containsKey(appointmentId);
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.reminders.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!tryActivate()) {
+                return;
+            }
+        } catch (IOException e) {
+            log.error("Could not acquire the reminder lock", e);
+            return;
+        }
+        List<Reminder> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(System.currentTimeMillis(), due::add);
+        }
+        for (Reminder reminder : due) {
+            send(reminder);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws IOException {
+        // Not under the monitor: the reminders being sent need it to journal FIRED
+        if (sender != null) {
+            sender.shutdown();
+            try {
+                if (!sender.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("Reminders still being sent after {} ms, they are sent again by the next holder",
+                            shutdownTimeoutMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+            }
+            if (lockChannel != null) {
+                // Closing the channel releases the lock for the next instance
+                lockChannel.close();
+            }
+        }
+    }
+    
+    private void send(Reminder reminder) {
+        try {
+            sender.execute(() -> fire(reminder));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: not journaled as FIRED, so the next holder sends it
+            log.debug("Not sending reminder for appointment {} while shutting down", reminder.appointmentId());
+        }
+    }
+    
+    // FIRED is journaled only once the reminder was handed to the channels; a reminder that could
+    // not be handed over is retried after retry-ms while the appointment is still ahead
+    private void fire(Reminder reminder) {
+        PendingAppointment appointment;
+        synchronized (this) {
+            appointment = pending.get(reminder.appointmentId());
+            if (appointment == null || !appointment.timers.containsKey(reminder.offsetMinutes())) {
+                return;
+            }
+        }
+        
+        boolean sent;
+        try {
+            notificationService.sendAppointmentReminderNotification(appointment.event, reminder.offsetMinutes());
+            sent = true;
+        } catch (Exception e) {
+            log.error("Error sending reminder for appointment: {}", reminder.appointmentId(), e);
+            sent = false;
+        }
+        
+        synchronized (this) {
+            // Rescheduled or cancelled while sending: the new state already replaced this reminder
+            if (pending.get(reminder.appointmentId()) != appointment) {
+                return;
+            }
+            if (sent) {
+                appointment.timers.remove(reminder.offsetMinutes());
+                if (appointment.timers.isEmpty()) {
+                    pending.remove(reminder.appointmentId());
+                }
+                append(new ReminderJournal.Entry(ReminderJournal.FIRED, reminder.appointmentId(), null,
+                        List.of(reminder.offsetMinutes())));
+                return;
+            }
+            long retryAt = System.currentTimeMillis() + retryMs;
+            HierarchicalTimingWheel.Timer<Reminder> retry = new HierarchicalTimingWheel.Timer<>(retryAt, reminder);
+            if (retryAt < toEpochMilli(appointment.event) && wheel.add(retry)) {
+                appointment.timers.put(reminder.offsetMinutes(), retry);
+            }
+        }
+    }
+    
+    // The listener only runs on the lock holder; a delivery elsewhere goes back to the queue
+    private void requireActive() {
+        if (lock == null) {
+            throw new IllegalStateException("Reminders run on the instance holding the reminder lock");
+        }
+    }
+    
+    private boolean isLockFree() throws IOException {
+        try {
+            FileLock probe = lockChannel.tryLock();
+            if (probe == null) {
+                return false;
+            }
+            probe.release();
+            return true;
+        } catch (OverlappingFileLockException e) {
+            return false;
+        }
+    }
+    
+    // -1 while the broker cannot be asked
+    private int remindersConsumers() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(remindersQueue);
+            return info != null ? info.getConsumerCount() : 0;
+        } catch (AmqpException e) {
+            log.debug("Could not read the consumers of queue {}: {}", remindersQueue, e.getMessage());
+            return -1;
+        }
+    }
+    
+    private boolean cancelTimers(Long appointmentId) {
+        PendingAppointment appointment = pending.remove(appointmentId);
+        if (appointment == null) {
+            return false;
+        }
+        for (HierarchicalTimingWheel.Timer<Reminder> timer : appointment.timers.values()) {
+            timer.cancel();
+        }
+        return true;
+    }
+    
+    private void append(ReminderJournal.Entry entry) {
+        try {
+            journal.append(entry);
+            if (journal.getEntryCount() > Math.max(compactMinEntries, 2L * (pending.size() + cancelled.size()))) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void compact() throws IOException {
+        // Events are only out of order for a short while; a tombstone is dropped once the
+        // cancelled appointment is tombstone-retention-hours in the past
+        long cutoff = System.currentTimeMillis() - tombstoneRetentionHours * 3_600_000L;
+        cancelled.values().removeIf(event -> toEpochMilli(event) < cutoff);
+        
+        List<ReminderJournal.Entry> entries = new ArrayList<>(pending.size() + cancelled.size());
+        for (Map.Entry<Long, PendingAppointment> entry : pending.entrySet()) {
+            entries.add(new ReminderJournal.Entry(ReminderJournal.SCHEDULE, entry.getKey(),
+                    entry.getValue().event, new ArrayList<>(entry.getValue().timers.keySet())));
+        }
+        for (Map.Entry<Long, AppointmentEvent> entry : cancelled.entrySet()) {
+            entries.add(new ReminderJournal.Entry(ReminderJournal.CANCEL, entry.getKey(), entry.getValue(), null));
+        }
+        journal.rewrite(entries);
+    }
+    
+    private static long toEpochMilli(AppointmentEvent event) {
+        return event.getAppointmentDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    record Reminder(Long appointmentId, int offsetMinutes) {
+    }
+    
+    private static final class PendingAppointment {
+        
+        private final AppointmentEvent event;
+        private final Map<Integer, HierarchicalTimingWheel.Timer<Reminder>> timers = new HashMap<>(4);
+        
+        PendingAppointment(AppointmentEvent event) {
+            this.event = event;
+        }
+    }
+}
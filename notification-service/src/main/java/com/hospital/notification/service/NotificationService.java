@@ -1,6 +1,9 @@
 package com.hospital.notification.service;
 
+import com.hospital.notification.channel.NotificationMessage;
+import com.hospital.notification.channel.NotificationRouter;
 import com.hospital.notification.event.AppointmentEvent;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -8,9 +11,12 @@ import org.springframework.stereotype.Service;
 import java.time.format.DateTimeFormatter;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
     
+    private final NotificationRouter notificationRouter;
+    
     @Value("${notification.enabled}")
     private boolean notificationEnabled;
     
@@ -38,7 +44,7 @@ public class NotificationService {
                 event.getAppointmentId()
         );
         
-        sendNotification(event.getPatientEmail(), "Appointment Scheduled", message);
+        sendNotification(event, "CREATED", "Appointment Scheduled", message);
     }
     
     public void sendAppointmentUpdatedNotification(AppointmentEvent event) {
@@ -62,7 +68,7 @@ public class NotificationService {
                 event.getAppointmentId()
         );
         
-        sendNotification(event.getPatientEmail(), "Appointment Updated", message);
+        sendNotification(event, "UPDATED", "Appointment Updated", message);
     }
     
     public void sendAppointmentCancelledNotification(AppointmentEvent event) {
@@ -86,31 +92,46 @@ public class NotificationService {
                 event.getAppointmentId()
         );
         
-        sendNotification(event.getPatientEmail(), "Appointment Cancelled", message);
+        sendNotification(event, "CANCELLED", "Appointment Cancelled", message);
     }
     
-    private void sendNotification(String email, String subject, String message) {
-        // In a real system, this would send an actual email
-        // For now, we'll just log it
-        log.info("===== NOTIFICATION =====");
-        log.info("To: {}", email);
-        log.info("Subject: {}", subject);
-        log.info("Message:\n{}", message);
-        log.info("========================");
-        
-        // Uncomment below to send actual emails (requires proper SMTP configuration)
-        /*
-        try {
-            SimpleMailMessage mailMessage = new SimpleMailMessage();
-            mailMessage.setTo(email);
-            mailMessage.setSubject(subject);
-            mailMessage.setText(message);
-            mailMessage.setFrom(fromEmail);
-            mailSender.send(mailMessage);
-            log.info("Email sent successfully to: {}", email);
-        } catch (Exception e) {
-            log.error("Failed to send email to: {}", email, e);
+    public void sendAppointmentReminderNotification(AppointmentEvent event, int offsetMinutes) {
+        if (!notificationEnabled) {
+            log.info("Notifications disabled");
+            return;
         }
-        */
+        
+        String remaining = offsetMinutes % 60 == 0
+                ? (offsetMinutes / 60) + " hour(s)"
+                : offsetMinutes + " minute(s)";
+        
+        String message = String.format(
+                "Dear %s,\n\n" +
+                "This is a reminder that your appointment is in %s.\n\n" +
+                "Details:\n" +
+                "- Doctor: %s\n" +
+                "- Date/Time: %s\n" +
+                "- Appointment ID: %d\n\n" +
+                "Please arrive 15 minutes before your appointment time.\n\n" +
+                "Thank you,\nHospital Management System",
+                event.getPatientName(),
+                remaining,
+                event.getDoctorName(),
+                event.getAppointmentDate().format(DATE_FORMATTER),
+                event.getAppointmentId()
+        );
+        
+        sendNotification(event, "REMINDER", "Appointment Reminder", message);
+    }
+    
+    private void sendNotification(AppointmentEvent event, String eventType, String subject, String message) {
+        notificationRouter.route(new NotificationMessage(
+                eventType,
+                event.getAppointmentId(),
+                event.getPatientId(),
+                event.getPatientEmail(),
+                subject,
+                message
+        ));
     }
 }
@@ -0,0 +1,116 @@
+package com.hospital.notification.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class ChannelDispatcherTest {
+    
+    private static final NotificationMessage MESSAGE = new NotificationMessage("CREATED", 7L, 3L,
+            "paciente@example.com", "Appointment Scheduled", "Dear Paciente, your appointment has been scheduled!");
+    
+    private final List<ChannelRetry> deferred = new CopyOnWriteArrayList<>();
+    private StubGateway gateway;
+    private WebhookChannel webhook;
+    
+    @BeforeEach
+    void startGateway() throws IOException {
+        gateway = new StubGateway();
+        webhook = new WebhookChannel(new ObjectMapper(), 1000);
+        ReflectionTestUtils.setField(webhook, "enabled", true);
+        ReflectionTestUtils.setField(webhook, "url", gateway.url());
+        ReflectionTestUtils.setField(webhook, "timeoutMs", 2000L);
+    }
+    
+    @AfterEach
+    void stopGateway() {
+        gateway.close();
+    }
+    
+    @Test
+    void failedDeliveryIsHandedBackForRetry() {
+        gateway.respondWith(500);
+        ChannelDispatcher dispatcher = new ChannelDispatcher(webhook, 1, 10, 5, 60000, deferred::add);
+        
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isTrue();
+        
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deferred.size() == 1);
+        assertThat(deferred.get(0)).isEqualTo(new ChannelRetry("webhook", MESSAGE, 1));
+    }
+    
+    @Test
+    void openCircuitRefusesInsteadOfDropping() {
+        gateway.respondWith(500);
+        ChannelDispatcher dispatcher = new ChannelDispatcher(webhook, 1, 10, 2, 60000, deferred::add);
+        dispatcher.dispatch(MESSAGE, 0);
+        dispatcher.dispatch(MESSAGE, 0);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deferred.size() == 2);
+        
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isFalse();
+        assertThat(gateway.bodies()).hasSize(2);
+    }
+    
+    @Test
+    void fullQueueRefusesInsteadOfDropping() {
+        gateway.hold();
+        ChannelDispatcher dispatcher = new ChannelDispatcher(webhook, 1, 1, 5, 60000, deferred::add);
+        
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isTrue();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> gateway.bodies().size() == 1);
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isTrue();
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isFalse();
+    }
+    
+    @Test
+    void shutdownReturnsWhatIsStillQueued() throws InterruptedException {
+        gateway.hold();
+        ChannelDispatcher dispatcher = new ChannelDispatcher(webhook, 1, 10, 5, 60000, deferred::add);
+        dispatcher.dispatch(MESSAGE, 0);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> gateway.bodies().size() == 1);
+        dispatcher.dispatch(MESSAGE, 2);
+        
+        List<ChannelRetry> unsent = dispatcher.shutdown(100);
+        
+        assertThat(unsent).containsExactly(new ChannelRetry("webhook", MESSAGE, 2));
+        assertThat(dispatcher.dispatch(MESSAGE, 0)).isFalse();
+    }
+    
+    @Test
+    void routerParksRefusedAndFailedDeliveriesAndGivesUpAfterMaxAttempts() {
+        gateway.respondWith(500);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("notification.channels.webhook.pool-size", "1")
+                .withProperty("notification.channels.webhook.failure-threshold", "1");
+        NotificationRouter router = new NotificationRouter(List.of(webhook), environment, rabbitTemplate,
+                new String[] {"webhook"}, new String[] {"webhook"}, new String[] {"webhook"}, new String[] {"webhook"});
+        ReflectionTestUtils.setField(router, "waitQueue", "wait");
+        ReflectionTestUtils.setField(router, "deadQueue", "dead");
+        ReflectionTestUtils.setField(router, "maxAttempts", 3);
+        
+        // Fails at the gateway, then the open circuit refuses the next one
+        router.route(MESSAGE);
+        verify(rabbitTemplate, timeout(5000)).convertAndSend("wait", new ChannelRetry("webhook", MESSAGE, 1));
+        router.route(MESSAGE);
+        verify(rabbitTemplate, timeout(5000).times(2)).convertAndSend("wait", new ChannelRetry("webhook", MESSAGE, 1));
+        
+        router.redeliver(new ChannelRetry("webhook", MESSAGE, 2));
+        verify(rabbitTemplate).convertAndSend(eq("dead"), eq(new ChannelRetry("webhook", MESSAGE, 3)));
+    }
+}
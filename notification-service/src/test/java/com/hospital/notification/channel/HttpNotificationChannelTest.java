@@ -0,0 +1,78 @@
+package com.hospital.notification.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpNotificationChannelTest {
+    
+    private static final NotificationMessage MESSAGE = new NotificationMessage("CREATED", 7L, 3L,
+            "paciente@example.com", "Appointment Scheduled", "Dear Paciente, your appointment has been scheduled!");
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StubGateway gateway;
+    
+    @BeforeEach
+    void startGateway() throws IOException {
+        gateway = new StubGateway();
+    }
+    
+    @AfterEach
+    void stopGateway() {
+        gateway.close();
+    }
+    
+    @Test
+    void smsPostsTheShortTextByPatientId() throws Exception {
+        SmsChannel sms = new SmsChannel(objectMapper, 1000);
+        ReflectionTestUtils.setField(sms, "url", gateway.url());
+        ReflectionTestUtils.setField(sms, "timeoutMs", 1000L);
+        ReflectionTestUtils.setField(sms, "maxLength", 20);
+        
+        sms.send(MESSAGE);
+        
+        assertThat(gateway.bodies()).hasSize(1);
+        assertThat(objectMapper.readTree(gateway.bodies().get(0)).get("patientId").asLong()).isEqualTo(3L);
+        assertThat(objectMapper.readTree(gateway.bodies().get(0)).get("text").asText()).hasSize(20);
+    }
+    
+    @Test
+    void webhookPostsTheWholeMessage() throws Exception {
+        WebhookChannel webhook = new WebhookChannel(objectMapper, 1000);
+        ReflectionTestUtils.setField(webhook, "url", gateway.url());
+        ReflectionTestUtils.setField(webhook, "timeoutMs", 1000L);
+        
+        webhook.send(MESSAGE);
+        
+        assertThat(objectMapper.readValue(gateway.bodies().get(0), NotificationMessage.class)).isEqualTo(MESSAGE);
+    }
+    
+    @Test
+    void gatewayErrorFailsTheSend() {
+        gateway.respondWith(503);
+        WebhookChannel webhook = new WebhookChannel(objectMapper, 1000);
+        ReflectionTestUtils.setField(webhook, "url", gateway.url());
+        ReflectionTestUtils.setField(webhook, "timeoutMs", 1000L);
+        
+        assertThatThrownBy(() -> webhook.send(MESSAGE))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("503");
+    }
+    
+    @Test
+    void slowGatewayTimesOut() {
+        gateway.hold();
+        WebhookChannel webhook = new WebhookChannel(objectMapper, 1000);
+        ReflectionTestUtils.setField(webhook, "url", gateway.url());
+        ReflectionTestUtils.setField(webhook, "timeoutMs", 200L);
+        
+        assertThatThrownBy(() -> webhook.send(MESSAGE)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package com.hospital.notification.channel;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+// Stand-in for the SMS and webhook gateways: records each request body and answers with the
+// configured status, optionally after waiting for release()
+class StubGateway implements AutoCloseable {
+    
+    private final HttpServer server;
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile int status = 200;
+    private volatile boolean holding;
+    
+    StubGateway() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                bodies.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            if (holding) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+    
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/notify";
+    }
+    
+    void respondWith(int status) {
+        this.status = status;
+    }
+    
+    void hold() {
+        holding = true;
+    }
+    
+    void release() {
+        released.countDown();
+    }
+    
+    List<String> bodies() {
+        return bodies;
+    }
+    
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+    }
+}
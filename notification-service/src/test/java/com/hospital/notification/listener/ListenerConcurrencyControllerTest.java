@@ -0,0 +1,121 @@
+package com.hospital.notification.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// The mocked AmqpAdmin stands in for the broker and reports the queue depths
+class ListenerConcurrencyControllerTest {
+    
+    private final RabbitListenerEndpointRegistry endpointRegistry = mock(RabbitListenerEndpointRegistry.class);
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+    
+    @Test
+    void disabledControllerLeavesContainersAsConfigured() {
+        ListenerConcurrencyController controller = controller(false);
+        SimpleMessageListenerContainer container = container("created.queue");
+        
+        controller.register(container, 1);
+        controller.adjust();
+        
+        verifyNoInteractions(container, amqpAdmin);
+    }
+    
+    @Test
+    void backlogAddsConsumersAndAnEmptyQueueGivesThemBack() {
+        ListenerConcurrencyController controller = controller(true);
+        SimpleMessageListenerContainer container = container("created.queue");
+        controller.register(container, 1);
+        verify(container).setConcurrentConsumers(1);
+        verify(container).setPrefetchCount(1);
+        
+        depth("created.queue", 500);
+        controller.adjust();
+        verify(container).setPrefetchCount(11);
+        verify(container).setConcurrentConsumers(2);
+        
+        controller.adjust();
+        verify(container).setPrefetchCount(21);
+        verify(container).setConcurrentConsumers(3);
+        
+        depth("created.queue", 0);
+        controller.adjust();
+        verify(container, times(2)).setConcurrentConsumers(2);
+    }
+    
+    @Test
+    void containersNotRegisteredKeepTheirConsumers() {
+        ListenerConcurrencyController controller = controller(true);
+        SimpleMessageListenerContainer reminders = container("reminders.queue");
+        depth("reminders.queue", 500);
+        
+        controller.adjust();
+        
+        verify(reminders, never()).setConcurrentConsumers(anyInt());
+        verify(reminders, never()).setPrefetchCount(anyInt());
+    }
+    
+    @Test
+    void urgentLaneKeepsItsShareWhileBulkLanesAreSaturated() {
+        ListenerConcurrencyController controller = controller(true);
+        SimpleMessageListenerContainer urgent = container("created.urgent.queue");
+        controller.register(urgent, 4);
+        List<SimpleMessageListenerContainer> bulk = List.of(
+                container("created.queue"), container("updated.queue"), container("cancelled.queue"));
+        bulk.forEach(container -> controller.register(container, 1));
+        depth("created.urgent.queue", 500);
+        bulk.forEach(container -> depth(container.getQueueNames()[0], 5000));
+        
+        for (int i = 0; i < 20; i++) {
+            controller.adjust();
+        }
+        
+        // Budget 16, at most 8 per lane: the urgent lane reaches its cap, the bulk lanes share the rest
+        assertThat(consumers(urgent)).isEqualTo(8);
+        assertThat(bulk).allSatisfy(container -> assertThat(consumers(container)).isBetween(2, 3));
+        assertThat(bulk.stream().mapToInt(this::consumers).sum()).isEqualTo(8);
+    }
+    
+    private int consumers(SimpleMessageListenerContainer container) {
+        ArgumentCaptor<Integer> consumers = ArgumentCaptor.forClass(Integer.class);
+        verify(container, atLeastOnce()).setConcurrentConsumers(consumers.capture());
+        return consumers.getValue();
+    }
+    
+    private ListenerConcurrencyController controller(boolean enabled) {
+        return new ListenerConcurrencyController(endpointRegistry, amqpAdmin, new SimpleMeterRegistry(), enabled,
+                1, 8, 16, 1, 100, 10, 0.5, 10, 100, 0.05);
+    }
+    
+    private SimpleMessageListenerContainer container(String queue) {
+        SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+        when(container.getQueueNames()).thenReturn(new String[] {queue});
+        when(container.isRunning()).thenReturn(true);
+        containers.add(container);
+        when(endpointRegistry.getListenerContainers()).thenReturn(List.copyOf(containers));
+        return container;
+    }
+    
+    private void depth(String queue, int messages) {
+        when(amqpAdmin.getQueueInfo(queue)).thenReturn(new QueueInformation(queue, messages, 1));
+    }
+}
@@ -0,0 +1,40 @@
+package com.hospital.notification.listener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeightedShareTest {
+    
+    @Test
+    void busyLanesSplitTheBudgetByWeight() {
+        assertThat(WeightedShare.allocate(10, 1, new int[] {10, 10, 10}, new int[] {3, 1, 1}))
+                .containsExactly(6, 2, 2);
+        assertThat(WeightedShare.allocate(16, 1, new int[] {8, 8, 8, 8}, new int[] {4, 1, 1, 1}))
+                .containsExactly(8, 3, 3, 2);
+    }
+    
+    @Test
+    void idleLanesGetNothingAndLeaveTheirShareToTheOthers() {
+        assertThat(WeightedShare.allocate(10, 1, new int[] {0, 10, 10}, new int[] {4, 1, 1}))
+                .containsExactly(0, 5, 5);
+    }
+    
+    @Test
+    void shareALaneDoesNotWantGoesToTheOthers() {
+        assertThat(WeightedShare.allocate(12, 1, new int[] {2, 10, 10}, new int[] {4, 1, 1}))
+                .containsExactly(2, 5, 5);
+    }
+    
+    @Test
+    void demandBelowTheBudgetIsMetInFull() {
+        assertThat(WeightedShare.allocate(16, 1, new int[] {3, 1, 2}, new int[] {4, 1, 1}))
+                .containsExactly(3, 1, 2);
+    }
+    
+    @Test
+    void everyLaneKeepsItsMinimumEvenOverBudget() {
+        assertThat(WeightedShare.allocate(2, 1, new int[] {5, 5, 5}, new int[] {4, 1, 1}))
+                .containsExactly(1, 1, 1);
+    }
+}
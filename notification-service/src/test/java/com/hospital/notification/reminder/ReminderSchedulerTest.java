@@ -0,0 +1,232 @@
+package com.hospital.notification.reminder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.notification.event.AppointmentEvent;
+import com.hospital.notification.service.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReminderSchedulerTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<ReminderScheduler> schedulers = new ArrayList<>();
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    
+    @TempDir
+    Path dir;
+    
+    @AfterEach
+    void stopSchedulers() throws Exception {
+        for (ReminderScheduler scheduler : schedulers) {
+            scheduler.stop();
+        }
+    }
+    
+    @Test
+    void onlyTheLockHolderRunsRemindersAndStartsTheListener() throws Exception {
+        MessageListenerContainer first = mock(MessageListenerContainer.class);
+        MessageListenerContainer second = mock(MessageListenerContainer.class);
+        ReminderScheduler holder = scheduler(mock(NotificationService.class), first);
+        ReminderScheduler standby = scheduler(mock(NotificationService.class), second);
+        
+        assertThat(holder.tryActivate()).isTrue();
+        assertThat(standby.tryActivate()).isFalse();
+        verify(first).start();
+        verify(second, never()).start();
+        assertThatThrownBy(() -> standby.schedule(event(1L, LocalDateTime.now().plusDays(2))))
+                .isInstanceOf(IllegalStateException.class);
+        
+        holder.stop();
+        schedulers.remove(holder);
+        assertThat(standby.tryActivate()).isTrue();
+        verify(second).start();
+    }
+    
+    @Test
+    void reminderIsJournaledAsFiredOnlyAfterItWasSent() throws Exception {
+        // The 120 minute reminder of an appointment an hour ahead came due while no instance ran
+        ReminderJournal journal = new ReminderJournal(dir.resolve("reminders.journal"), objectMapper);
+        journal.open();
+        journal.append(new ReminderJournal.Entry(ReminderJournal.SCHEDULE, 1L,
+                event(1L, LocalDateTime.now().plusHours(1)), List.of(120)));
+        journal.close();
+        
+        NotificationService failing = mock(NotificationService.class);
+        doThrow(new IllegalStateException("channel queue full"))
+                .when(failing).sendAppointmentReminderNotification(any(), anyInt());
+        ReminderScheduler first = scheduler(failing, mock(MessageListenerContainer.class));
+        assertThat(first.tryActivate()).isTrue();
+        verify(failing, timeout(5000)).sendAppointmentReminderNotification(any(), anyInt());
+        first.stop();
+        schedulers.remove(first);
+        
+        NotificationService working = mock(NotificationService.class);
+        ReminderScheduler second = scheduler(working, mock(MessageListenerContainer.class));
+        assertThat(second.tryActivate()).isTrue();
+        verify(working, timeout(5000).times(1)).sendAppointmentReminderNotification(any(), anyInt());
+        // Waits for the send to be journaled
+        second.stop();
+        schedulers.remove(second);
+        
+        NotificationService afterwards = mock(NotificationService.class);
+        ReminderScheduler third = scheduler(afterwards, mock(MessageListenerContainer.class));
+        assertThat(third.tryActivate()).isTrue();
+        third.stop();
+        schedulers.remove(third);
+        verify(afterwards, never()).sendAppointmentReminderNotification(any(), anyInt());
+    }
+    
+    @Test
+    void slowSendDoesNotHoldUpTheWheel() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        NotificationService slow = mock(NotificationService.class);
+        doAnswer(invocation -> release.await(10, TimeUnit.SECONDS))
+                .when(slow).sendAppointmentReminderNotification(any(), anyInt());
+        ReminderScheduler scheduler = scheduler(slow, mock(MessageListenerContainer.class));
+        assertThat(scheduler.tryActivate()).isTrue();
+        // The 120 minute reminder is due with the next tick, the 1440 minute one had passed at booking
+        scheduler.schedule(event(1L, LocalDateTime.now().plusMinutes(120).plusSeconds(1)));
+        
+        Thread.sleep(1500);
+        long start = System.nanoTime();
+        scheduler.tick();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        verify(slow, timeout(5000)).sendAppointmentReminderNotification(any(), anyInt());
+        // Still pending while the send is in flight, journaled once it went through
+        assertThat(scheduler.hasReminders(1L)).isTrue();
+        release.countDown();
+        scheduler.stop();
+        schedulers.remove(scheduler);
+        assertThat(scheduler.hasReminders(1L)).isFalse();
+    }
+    
+    @Test
+    void queueConsumedWhileTheLockIsFreeFailsStartup() {
+        // Another instance consumes the reminders with a lock file this one does not see
+        when(amqpAdmin.getQueueInfo("appointment.reminders.queue"))
+                .thenReturn(new QueueInformation("appointment.reminders.queue", 0, 1));
+        
+        assertThatThrownBy(() -> scheduler(mock(NotificationService.class), mock(MessageListenerContainer.class)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("journal-path");
+    }
+    
+    @Test
+    void lockIsNotTakenWhileTheQueueIsConsumedElsewhere() throws Exception {
+        MessageListenerContainer listener = mock(MessageListenerContainer.class);
+        ReminderScheduler scheduler = scheduler(mock(NotificationService.class), listener);
+        // The other instance started its listener after this one checked at startup
+        when(amqpAdmin.getQueueInfo("appointment.reminders.queue"))
+                .thenReturn(new QueueInformation("appointment.reminders.queue", 0, 1));
+        
+        assertThat(scheduler.tryActivate()).isFalse();
+        assertThat(scheduler.isActive()).isFalse();
+        verify(listener, never()).start();
+        
+        when(amqpAdmin.getQueueInfo("appointment.reminders.queue"))
+                .thenReturn(new QueueInformation("appointment.reminders.queue", 0, 0));
+        assertThat(scheduler.tryActivate()).isTrue();
+        verify(listener).start();
+    }
+    
+    @Test
+    void cancelledAppointmentDropsOlderEventsAlsoAfterRestarts() throws Exception {
+        LocalDateTime date = LocalDateTime.now().plusDays(3);
+        AppointmentEvent cancellation = event(1L, date);
+        cancellation.setEventType("CANCELLED");
+        cancellation.setStatus("CANCELLED");
+        cancellation.setVersion(2L);
+        
+        ReminderScheduler first = scheduler(mock(NotificationService.class), mock(MessageListenerContainer.class));
+        assertThat(first.tryActivate()).isTrue();
+        first.schedule(versioned(event(1L, date), 1L));
+        first.cancel(cancellation);
+        // The update of version 1 was still queued in the bulk lane
+        first.schedule(versioned(event(1L, date), 1L));
+        assertThat(first.hasReminders(1L)).isFalse();
+        first.stop();
+        schedulers.remove(first);
+        
+        // Restored from the journal, then again from the compacted one
+        for (int restart = 0; restart < 2; restart++) {
+            ReminderScheduler next = scheduler(mock(NotificationService.class), mock(MessageListenerContainer.class));
+            assertThat(next.tryActivate()).isTrue();
+            next.schedule(versioned(event(1L, date), 2L));
+            assertThat(next.hasReminders(1L)).isFalse();
+            next.stop();
+            schedulers.remove(next);
+        }
+        
+        ReminderScheduler last = scheduler(mock(NotificationService.class), mock(MessageListenerContainer.class));
+        assertThat(last.tryActivate()).isTrue();
+        last.schedule(versioned(event(1L, date), 3L));
+        assertThat(last.hasReminders(1L)).isTrue();
+    }
+    
+    private ReminderScheduler scheduler(NotificationService notificationService, MessageListenerContainer listener)
+            throws Exception {
+        RabbitListenerEndpointRegistry registry = mock(RabbitListenerEndpointRegistry.class);
+        when(registry.getListenerContainer(ReminderScheduler.LISTENER_ID)).thenReturn(listener);
+        ReminderScheduler scheduler = new ReminderScheduler(notificationService, objectMapper, registry, amqpAdmin);
+        ReflectionTestUtils.setField(scheduler, "remindersQueue", "appointment.reminders.queue");
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "offsetsMinutes", new int[] {1440, 120});
+        ReflectionTestUtils.setField(scheduler, "tickMs", 1000L);
+        ReflectionTestUtils.setField(scheduler, "wheelSize", 60);
+        ReflectionTestUtils.setField(scheduler, "journalPath", dir.resolve("reminders.journal").toString());
+        ReflectionTestUtils.setField(scheduler, "compactMinEntries", 10000L);
+        ReflectionTestUtils.setField(scheduler, "retryMs", 60000L);
+        ReflectionTestUtils.setField(scheduler, "tombstoneRetentionHours", 24L);
+        ReflectionTestUtils.setField(scheduler, "senderThreads", 2);
+        ReflectionTestUtils.setField(scheduler, "shutdownTimeoutMs", 10000L);
+        schedulers.add(scheduler);
+        scheduler.init();
+        return scheduler;
+    }
+    
+    private static AppointmentEvent versioned(AppointmentEvent event, Long version) {
+        event.setVersion(version);
+        return event;
+    }
+    
+    private static AppointmentEvent event(Long id, LocalDateTime date) {
+        AppointmentEvent event = new AppointmentEvent();
+        event.setAppointmentId(id);
+        event.setPatientId(10L);
+        event.setPatientName("Paciente Teste");
+        event.setPatientEmail("paciente@example.com");
+        event.setDoctorId(20L);
+        event.setDoctorName("Dr. Teste");
+        event.setAppointmentDate(date);
+        event.setEventType("CREATED");
+        event.setStatus("SCHEDULED");
+        event.setVersion(0L);
+        return event;
+    }
+}
@@ -0,0 +1,63 @@
+#!/bin/bash
+
+# Measures a large REST payload of the scheduling service: response time and bytes on the wire
+# of a patient's appointment list, for each combination of HTTP/1.1 or HTTP/2 (h2c) and identity
+# or gzip encoding.
+#
+# Usage: ./payload-benchmark.sh [rows] [requests]
+#
+# Expects the service on localhost:8080, for example with the in-memory database:
+#   java -jar scheduling-service/target/scheduling-service-1.0.0.jar --spring.profiles.active=test \
+#        --scheduling.rate-limit.capacity=100000 --scheduling.rate-limit.refill-per-second=100000
+# The rate limit is raised so seeding the rows is not throttled. Each run seeds a new patient.
+
+ROWS=${1:-1000}
+REQUESTS=${2:-50}
+BASE_URL="http://localhost:8080/api/appointments"
+AUTH=(-u doctor:doctor123)
+PATIENT_ID=$(( $(date +%s) % 1000000 + 1000 ))
+
+if [ "$(curl -s -o /dev/null -w '%{http_code}' "${AUTH[@]}" "$BASE_URL/patient/$PATIENT_ID")" != "200" ]; then
+    echo "❌ scheduling-service is not answering on $BASE_URL"
+    exit 1
+fi
+
+echo "🌱 Seeding $ROWS appointments for patient $PATIENT_ID"
+for i in $(seq 1 "$ROWS"); do
+    DATE=$(date -u -d "+$((i % 365 + 1)) days" +%Y-%m-%dT10:00:00)
+    STATUS=$(curl -s -o /dev/null -w '%{http_code}' "${AUTH[@]}" -X POST "$BASE_URL" \
+        -H "Content-Type: application/json" \
+        -d "{\"patientId\":$PATIENT_ID,\"patientName\":\"Paciente $PATIENT_ID\",\"patientEmail\":\"paciente$PATIENT_ID@example.com\",\"doctorId\":$((i % 20 + 1)),\"doctorName\":\"Dr. Médico $((i % 20 + 1))\",\"appointmentDate\":\"$DATE\",\"notes\":\"Consulta de acompanhamento número $i\"}")
+    if [ "$STATUS" != "201" ]; then
+        echo "❌ Seeding failed with HTTP $STATUS at row $i"
+        exit 1
+    fi
+done
+
+measure() {
+    local label=$1
+    shift
+    local total_ms=0
+    local bytes=0
+    local version=""
+    for run in $(seq 1 "$REQUESTS"); do
+        read -r time_s size http_version <<< "$(curl -s -o /dev/null "${AUTH[@]}" "$@" \
+            -w '%{time_total} %{size_download} %{http_version}' "$BASE_URL/patient/$PATIENT_ID")"
+        total_ms=$(awk -v t="$total_ms" -v s="$time_s" 'BEGIN { print t + s * 1000 }')
+        bytes=$size
+        version=$http_version
+    done
+    printf "   %-16s HTTP/%-4s %8s bytes  %7.2f ms/response\n" "$label" "$version" "$bytes" \
+        "$(awk -v t="$total_ms" -v n="$REQUESTS" 'BEGIN { print t / n }')"
+}
+
+# Warm-up, so the first variant is not measured against a cold JIT
+for run in $(seq 1 "$REQUESTS"); do
+    curl -s -o /dev/null "${AUTH[@]}" "$BASE_URL/patient/$PATIENT_ID"
+done
+
+echo "⏱️  GET $BASE_URL/patient/$PATIENT_ID ($ROWS rows), $REQUESTS requests each"
+measure "identity" --http1.1
+measure "gzip" --http1.1 -H "Accept-Encoding: gzip"
+measure "h2c identity" --http2-prior-knowledge
+measure "h2c gzip" --http2-prior-knowledge -H "Accept-Encoding: gzip"
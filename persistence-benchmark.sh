@@ -0,0 +1,133 @@
+#!/bin/bash
+
+# Measures the create and history-upsert paths with the default Hikari, Hibernate and driver
+# settings ("before") and with the prod profile ("after"): latency and throughput of creates on
+# the scheduling service, and how long the history service still needs after the last create
+# until it has upserted every one of them.
+#
+# Usage: ./persistence-benchmark.sh [creates] [parallel]
+#
+# Needs PostgreSQL and RabbitMQ (./start-infrastructure.sh) and both jars (mvn package in
+# scheduling-service and history-service): prepared statements and batch rewriting only exist in
+# the PostgreSQL driver. Each variant starts both services, sends the creates for a new patient
+# from [parallel] clients, then polls the history service until all of them are there.
+
+CREATES=${1:-2000}
+PARALLEL=${2:-8}
+ROOT="$(cd "$(dirname "$0")" && pwd)"
+SCHEDULING_JAR="$ROOT/scheduling-service/target/scheduling-service-1.0.0.jar"
+HISTORY_JAR="$ROOT/history-service/target/history-service-1.0.0.jar"
+BASE_URL="http://localhost:8080/api/appointments"
+GRAPHQL_URL="http://localhost:8082/graphql"
+CREDENTIALS=doctor:doctor123
+AUTH=(-u "$CREDENTIALS")
+TIMEOUT_SECONDS=120
+SCHEDULING_ARGS=(--management.tracing.enabled=false
+                 --scheduling.rate-limit.capacity=1000000 --scheduling.rate-limit.refill-per-second=1000000)
+HISTORY_ARGS=(--management.tracing.enabled=false)
+
+for jar in "$SCHEDULING_JAR" "$HISTORY_JAR"; do
+    if [ ! -f "$jar" ]; then
+        echo "❌ $jar not found, build it first"
+        exit 1
+    fi
+done
+
+SCHEDULING_LOG=$(mktemp)
+HISTORY_LOG=$(mktemp)
+TIMES=$(mktemp)
+trap 'rm -f "$SCHEDULING_LOG" "$HISTORY_LOG" "$TIMES"' EXIT
+
+# One create: prints the HTTP status and the response time
+create() {
+    local i=$1
+    local date
+    date=$(date -u -d "+$((i % 365 + 1)) days" +%Y-%m-%dT10:00:00)
+    curl -s -o /dev/null -u "$CREDENTIALS" -X POST "$BASE_URL" -H "Content-Type: application/json" \
+        -w '%{http_code} %{time_total}\n' \
+        -d "{\"patientId\":$PATIENT_ID,\"patientName\":\"Paciente $PATIENT_ID\",\"patientEmail\":\"paciente$PATIENT_ID@example.com\",\"doctorId\":$((i % 20 + 1)),\"doctorName\":\"Dr. Médico $((i % 20 + 1))\",\"appointmentDate\":\"$date\",\"notes\":\"Consulta de acompanhamento número $i\"}"
+}
+export -f create
+export BASE_URL CREDENTIALS
+
+history_count() {
+    curl -s -H "Content-Type: application/json" "$GRAPHQL_URL" \
+        -d "{\"query\":\"{ patientAppointments(patientId: $PATIENT_ID) { id } }\"}" | grep -o '"id"' | wc -l
+}
+
+wait_for() {
+    local label=$1 pid=$2 log=$3
+    shift 3
+    local deadline=$((SECONDS + TIMEOUT_SECONDS))
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "$@")" = "200" ]; do
+        if [ $SECONDS -ge $deadline ] || ! kill -0 "$pid" 2> /dev/null; then
+            echo "❌ $label did not become ready, last log lines:"
+            tail -20 "$log"
+            return 1
+        fi
+        sleep 0.5
+    done
+}
+
+run() {
+    local label=$1 profile=$2
+    local profile_args=()
+    if [ -n "$profile" ]; then
+        profile_args=(--spring.profiles.active="$profile")
+    fi
+
+    java -jar "$SCHEDULING_JAR" "${SCHEDULING_ARGS[@]}" "${profile_args[@]}" > "$SCHEDULING_LOG" 2>&1 &
+    local scheduling_pid=$!
+    java -jar "$HISTORY_JAR" "${HISTORY_ARGS[@]}" "${profile_args[@]}" > "$HISTORY_LOG" 2>&1 &
+    local history_pid=$!
+
+    if ! wait_for "$label scheduling-service" $scheduling_pid "$SCHEDULING_LOG" "${AUTH[@]}" "$BASE_URL/patient/1" ||
+       ! wait_for "$label history-service" $history_pid "$HISTORY_LOG" http://localhost:8082/actuator/health; then
+        kill $scheduling_pid $history_pid 2> /dev/null
+        exit 1
+    fi
+
+    # Warm-up on a patient of its own, so the first creates are not measured against a cold JIT
+    export PATIENT_ID=$(( $(date +%s%N) / 1000 % 1000000000 + 1000000 ))
+    seq 1 500 | xargs -P "$PARALLEL" -n 1 bash -c 'create "$0"' > /dev/null
+
+    PATIENT_ID=$((PATIENT_ID + 1))
+    local start_ns
+    start_ns=$(date +%s%N)
+    seq 1 "$CREATES" | xargs -P "$PARALLEL" -n 1 bash -c 'create "$0"' > "$TIMES"
+    local created_ns
+    created_ns=$(date +%s%N)
+
+    local failed
+    failed=$(grep -vc '^201 ' "$TIMES")
+    if [ "$failed" -gt 0 ]; then
+        echo "❌ $label: $failed creates failed, statuses: $(cut -d' ' -f1 "$TIMES" | sort | uniq -c | tr '\n' ' ')"
+        kill $scheduling_pid $history_pid
+        exit 1
+    fi
+
+    local deadline=$((SECONDS + TIMEOUT_SECONDS))
+    until [ "$(history_count)" -ge "$CREATES" ]; do
+        if [ $SECONDS -ge $deadline ]; then
+            echo "❌ $label: history-service has $(history_count) of $CREATES appointments"
+            kill $scheduling_pid $history_pid
+            exit 1
+        fi
+        sleep 0.1
+    done
+    local synced_ns
+    synced_ns=$(date +%s%N)
+
+    cut -d' ' -f2 "$TIMES" | sort -n | awk -v label="$label" -v elapsed=$(( (created_ns - start_ns) / 1000000 )) '
+        { t[NR] = $1 * 1000; sum += $1 * 1000 }
+        END { printf "   %-8s %7.2f ms avg  %7.2f ms p99  %7.1f creates/s", label, sum / NR, t[int(NR * 0.99)], NR * 1000 / elapsed }'
+    echo "  history caught up $(( (synced_ns - created_ns) / 1000000 )) ms after the last create"
+
+    kill $scheduling_pid $history_pid
+    wait $scheduling_pid $history_pid 2> /dev/null
+    sleep 2
+}
+
+echo "⏱️  POST $BASE_URL, $CREATES creates from $PARALLEL clients per variant"
+run "before" ""
+run "after" "prod"
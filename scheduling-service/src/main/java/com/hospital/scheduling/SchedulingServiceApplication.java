@@ -1,9 +1,14 @@
 package com.hospital.scheduling;
 
+import com.hospital.scheduling.config.SchedulingRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(SchedulingRuntimeHints.class)
 public class SchedulingServiceApplication {
     
     public static void main(String[] args) {
@@ -1,5 +1,8 @@
 package com.hospital.scheduling.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.scheduling.logging.CorrelationIdFilter;
+import org.slf4j.MDC;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -21,12 +24,24 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.queue.updated}")
     private String updatedQueue;
     
+    @Value("${rabbitmq.queue.created-urgent}")
+    private String createdUrgentQueue;
+    
+    @Value("${rabbitmq.queue.updated-urgent}")
+    private String updatedUrgentQueue;
+    
     @Value("${rabbitmq.routing-key.created}")
     private String createdRoutingKey;
     
     @Value("${rabbitmq.routing-key.updated}")
     private String updatedRoutingKey;
     
+    @Value("${rabbitmq.routing-key.created-urgent}")
+    private String createdUrgentRoutingKey;
+    
+    @Value("${rabbitmq.routing-key.updated-urgent}")
+    private String updatedUrgentRoutingKey;
+    
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
@@ -42,6 +57,17 @@ public class RabbitMQConfig {
         return new Queue(updatedQueue, true);
     }
     
+    // Urgent lanes: consumed by their own listeners, so urgent events never wait behind bulk ones
+    @Bean
+    public Queue createdUrgentQueue() {
+        return new Queue(createdUrgentQueue, true);
+    }
+    
+    @Bean
+    public Queue updatedUrgentQueue() {
+        return new Queue(updatedUrgentQueue, true);
+    }
+    
     @Bean
     public Binding createdBinding() {
         return BindingBuilder
@@ -59,14 +85,40 @@ public class RabbitMQConfig {
     }
     
     @Bean
-    public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public Binding createdUrgentBinding() {
+        return BindingBuilder
+                .bind(createdUrgentQueue())
+                .to(exchange())
+                .with(createdUrgentRoutingKey);
+    }
+    
+    @Bean
+    public Binding updatedUrgentBinding() {
+        return BindingBuilder
+                .bind(updatedUrgentQueue())
+                .to(exchange())
+                .with(updatedUrgentRoutingKey);
+    }
+    
+    // The application's ObjectMapper: ISO-8601 dates and the Blackbird module
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
     }
     
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(messageConverter());
+        template.setMessageConverter(messageConverter);
+        // Publishes a span and puts the trace context into the message headers
+        template.setObservationEnabled(true);
+        template.setBeforePublishPostProcessors(message -> {
+            String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+            if (correlationId != null) {
+                message.getMessageProperties().setHeader(CorrelationIdFilter.HEADER, correlationId);
+            }
+            return message;
+        });
         return template;
     }
 }
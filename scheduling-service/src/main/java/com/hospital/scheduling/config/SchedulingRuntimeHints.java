@@ -0,0 +1,38 @@
+package com.hospital.scheduling.config;
+
+import com.hospital.scheduling.dto.AppointmentDTO;
+import com.hospital.scheduling.dto.CreateAppointmentRequest;
+import com.hospital.scheduling.dto.UpdateAppointmentRequest;
+import com.hospital.scheduling.event.AppointmentEvent;
+import com.hospital.scheduling.logging.RepeatedMessageFilter;
+import net.logstash.logback.appender.LoggingEventAsyncDisruptorAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// Native image hints for what the AOT engine cannot see. Entities and MVC bodies are covered by
+// Spring; Lombok only generates code at compile time and needs nothing.
+public class SchedulingRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Bound by Jackson outside Spring MVC: AMQP payloads and stored idempotent responses
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                AppointmentEvent.class, AppointmentDTO.class,
+                CreateAppointmentRequest.class, UpdateAppointmentRequest.class);
+        
+        // Created and configured through setters by logback-spring.xml
+        hints.reflection()
+                .registerType(RepeatedMessageFilter.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LoggingEventAsyncDisruptorAppender.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(LogstashEncoder.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        
+        hints.resources()
+                .registerPattern("appointment-shard-schema.sql");
+    }
+}
@@ -1,5 +1,7 @@
 package com.hospital.scheduling.config;
 
+import com.hospital.scheduling.security.HospitalUser;
+import com.hospital.scheduling.security.HospitalUserDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -7,12 +9,10 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
@@ -40,25 +40,17 @@ public class SecurityConfig {
     
     @Bean
     public UserDetailsService userDetailsService() {
-        UserDetails doctor = User.builder()
-                .username("doctor")
-                .password(passwordEncoder().encode("doctor123"))
-                .roles("DOCTOR")
-                .build();
+        HospitalUser doctor = new HospitalUser("doctor", passwordEncoder().encode("doctor123"),
+                AuthorityUtils.createAuthorityList("ROLE_DOCTOR"), null);
         
-        UserDetails nurse = User.builder()
-                .username("nurse")
-                .password(passwordEncoder().encode("nurse123"))
-                .roles("NURSE")
-                .build();
+        HospitalUser nurse = new HospitalUser("nurse", passwordEncoder().encode("nurse123"),
+                AuthorityUtils.createAuthorityList("ROLE_NURSE"), null);
         
-        UserDetails patient = User.builder()
-                .username("patient")
-                .password(passwordEncoder().encode("patient123"))
-                .roles("PATIENT")
-                .build();
+        // The demo patient owns the appointments of patientId 1
+        HospitalUser patient = new HospitalUser("patient", passwordEncoder().encode("patient123"),
+                AuthorityUtils.createAuthorityList("ROLE_PATIENT"), 1L);
         
-        return new InMemoryUserDetailsManager(doctor, nurse, patient);
+        return new HospitalUserDetailsService(doctor, nurse, patient);
     }
     
     @Bean
@@ -0,0 +1,58 @@
+package com.hospital.scheduling.config;
+
+import com.hospital.scheduling.datasource.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+// The schema update only reaches shard 0, so every shard gets the appointments table,
+// appointment_seq and idempotency_keys from a script. On PostgreSQL appointment_seq is then moved past the highest
+// existing id, as ids used to come from an identity column.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShardSchemaInitializer {
+    
+    private static final String SCHEMA_SCRIPT = "appointment-shard-schema.sql";
+    
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Depending on the EntityManagerFactory makes this run after the schema update
+    private final EntityManagerFactory entityManagerFactory;
+    
+    @PostConstruct
+    public void initializeShards() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int target = shard;
+            shardRouter.inShard(shard, false, () -> {
+                initializeShard(target);
+                return null;
+            });
+        }
+    }
+    
+    private void initializeShard(int shard) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) con -> {
+            ScriptUtils.executeSqlScript(con, new ClassPathResource(SCHEMA_SCRIPT));
+            return con.getMetaData().getDatabaseProductName();
+        });
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            return;
+        }
+        
+        // Only the sequence part of an id counts; ids on shard 0 are the legacy ones
+        Long value = jdbcTemplate.queryForObject(
+                "SELECT setval('appointment_seq', GREATEST(" +
+                "(SELECT COALESCE(MAX(id & 281474976710655), 1) FROM appointments), " +
+                "(SELECT last_value FROM appointment_seq)))",
+                Long.class);
+        log.info("appointment_seq of shard {} aligned at {}", shard, value);
+    }
+}
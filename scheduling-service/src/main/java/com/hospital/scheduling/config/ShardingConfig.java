@@ -0,0 +1,61 @@
+package com.hospital.scheduling.config;
+
+import com.hospital.scheduling.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces the auto-configured DataSource when sharding is enabled. Shard 0 is the configured
+// spring.datasource; the other shards share its credentials and Hikari settings.
+@Configuration
+@ConditionalOnProperty(prefix = "scheduling.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+    
+    @Value("${scheduling.sharding.additional-urls}")
+    private String[] additionalUrls;
+    
+    private ShardRoutingDataSource routingDataSource;
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        shards.add(ReadReplicaConfig.hikari(properties, environment, properties.determineUrl()));
+        for (String url : additionalUrls) {
+            shards.add(ReadReplicaConfig.hikari(properties, environment, url.trim()));
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setPoolName("shard-" + i);
+        }
+        
+        routingDataSource = new ShardRoutingDataSource(shards);
+        return routingDataSource;
+    }
+    
+    // With open-in-view one EntityManager serves transactions on different shards
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+}
@@ -3,9 +3,14 @@ package com.hospital.scheduling.controller;
 import com.hospital.scheduling.dto.AppointmentDTO;
 import com.hospital.scheduling.dto.CreateAppointmentRequest;
 import com.hospital.scheduling.dto.UpdateAppointmentRequest;
+import com.hospital.scheduling.exception.InvalidPreconditionException;
 import com.hospital.scheduling.service.AppointmentService;
+import com.hospital.scheduling.service.AppointmentService.VersionedFields;
+import com.hospital.scheduling.service.IdempotencyService;
+import com.hospital.scheduling.service.IdempotencyService.IdempotentResult;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,63 +18,147 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/appointments")
 @RequiredArgsConstructor
 public class AppointmentController {
     
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    
     private final AppointmentService appointmentService;
+    private final IdempotencyService idempotencyService;
     
     @PostMapping
     @PreAuthorize("hasAnyRole('DOCTOR', 'NURSE')")
     public ResponseEntity<AppointmentDTO> createAppointment(
-            @Valid @RequestBody CreateAppointmentRequest request) {
-        AppointmentDTO created = appointmentService.createAppointment(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+            @Valid @RequestBody CreateAppointmentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        if (idempotencyKey == null) {
+            AppointmentDTO created = appointmentService.createAppointment(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        }
+        
+        IdempotentResult result = idempotencyService.execute(
+                authentication.getName() + ":POST:/api/appointments", idempotencyKey,
+                appointmentService.shardFor(request), request,
+                () -> appointmentService.createAppointment(request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.body());
     }
     
     @GetMapping("/{id}")
     @PreAuthorize("@appointmentSecurity.canAccess(#id, authentication)")
-    public ResponseEntity<AppointmentDTO> getAppointment(
+    public ResponseEntity<?> getAppointment(
             @PathVariable Long id,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             Authentication authentication) {
+        Set<String> selected = fields != null ? appointmentService.parseFields(fields) : null;
+        
+        // Only the version is read when the client's copy is current
+        Optional<Long> version = appointmentService.getAppointmentVersion(id);
+        if (version.isPresent() && matches(ifNoneMatch, etag(version.get(), selected))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag(version.get(), selected)).build();
+        }
+        
+        // The appointment may have changed since the check above, so the ETag comes from the
+        // version read together with the body
+        if (selected != null) {
+            VersionedFields appointment = appointmentService.getVersionedAppointmentFields(id, selected);
+            return appointment.version() != null
+                    ? ResponseEntity.ok().eTag(etag(appointment.version(), selected)).body(appointment.fields())
+                    : ResponseEntity.ok(appointment.fields());
+        }
+        
         AppointmentDTO appointment = appointmentService.getAppointment(id);
-        return ResponseEntity.ok(appointment);
+        return ResponseEntity.ok().eTag(etag(appointment.getVersion())).body(appointment);
     }
     
     @GetMapping
     @PreAuthorize("hasAnyRole('DOCTOR', 'NURSE')")
-    public ResponseEntity<List<AppointmentDTO>> getAllAppointments() {
+    public ResponseEntity<List<?>> getAllAppointments(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(appointmentService.getAllAppointmentFields(appointmentService.parseFields(fields)));
+        }
+        
         List<AppointmentDTO> appointments = appointmentService.getAllAppointments();
         return ResponseEntity.ok(appointments);
     }
     
     @GetMapping("/patient/{patientId}")
     @PreAuthorize("@appointmentSecurity.canAccessPatientAppointments(#patientId, authentication)")
-    public ResponseEntity<List<AppointmentDTO>> getPatientAppointments(
+    public ResponseEntity<List<?>> getPatientAppointments(
             @PathVariable Long patientId,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             Authentication authentication) {
+        Set<String> selected = fields != null ? appointmentService.parseFields(fields) : null;
+        
+        String etag = etag(appointmentService.getPatientAppointmentsFingerprint(patientId), selected);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(weak(etag)).build();
+        }
+        
+        if (selected != null) {
+            return ResponseEntity.ok().eTag(weak(etag)).body(appointmentService.getPatientAppointmentFields(patientId, selected));
+        }
+        
         List<AppointmentDTO> appointments = appointmentService.getPatientAppointments(patientId);
-        return ResponseEntity.ok(appointments);
+        return ResponseEntity.ok().eTag(weak(etag)).body(appointments);
     }
     
     @GetMapping("/patient/{patientId}/future")
     @PreAuthorize("@appointmentSecurity.canAccessPatientAppointments(#patientId, authentication)")
-    public ResponseEntity<List<AppointmentDTO>> getFuturePatientAppointments(
+    public ResponseEntity<List<?>> getFuturePatientAppointments(
             @PathVariable Long patientId,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             Authentication authentication) {
+        Set<String> selected = fields != null ? appointmentService.parseFields(fields) : null;
+        
+        String etag = etag(appointmentService.getFuturePatientAppointmentsFingerprint(patientId), selected);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(weak(etag)).build();
+        }
+        
+        if (selected != null) {
+            return ResponseEntity.ok().eTag(weak(etag))
+                    .body(appointmentService.getFuturePatientAppointmentFields(patientId, selected));
+        }
+        
         List<AppointmentDTO> appointments = appointmentService.getFuturePatientAppointments(patientId);
-        return ResponseEntity.ok(appointments);
+        return ResponseEntity.ok().eTag(weak(etag)).body(appointments);
     }
     
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('DOCTOR', 'NURSE')")
     public ResponseEntity<AppointmentDTO> updateAppointment(
             @PathVariable Long id,
-            @Valid @RequestBody UpdateAppointmentRequest request) {
-        AppointmentDTO updated = appointmentService.updateAppointment(id, request);
-        return ResponseEntity.ok(updated);
+            @Valid @RequestBody UpdateAppointmentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            Authentication authentication) {
+        Long expectedVersion = expectedVersion(id, ifMatch);
+        
+        if (idempotencyKey == null) {
+            AppointmentDTO updated = appointmentService.updateAppointment(id, request, expectedVersion);
+            return ResponseEntity.ok().eTag(etag(updated.getVersion())).body(updated);
+        }
+        
+        IdempotentResult result = idempotencyService.execute(
+                authentication.getName() + ":PUT:/api/appointments/" + id, idempotencyKey,
+                appointmentService.shardFor(id), request,
+                () -> appointmentService.updateAppointment(id, request, expectedVersion));
+        return ResponseEntity.ok()
+                .eTag(etag(result.body().getVersion()))
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.body());
     }
     
     @DeleteMapping("/{id}")
@@ -78,4 +167,53 @@ public class AppointmentController {
         appointmentService.deleteAppointment(id);
         return ResponseEntity.noContent().build();
     }
+    
+    private static String etag(Object value) {
+        return "\"" + value + "\"";
+    }
+    
+    // A field selection is a different representation, so it needs its own tag
+    private static String etag(Object value, Set<String> fields) {
+        if (fields == null) {
+            return etag(value);
+        }
+        return etag(value + "-" + Integer.toHexString(String.join(",", fields).hashCode()));
+    }
+    
+    // Lists are only ever compared with If-None-Match, and a weak tag lets Tomcat compress them
+    private static String weak(String etag) {
+        return "W/" + etag;
+    }
+    
+    // If-None-Match may list several tags, weak or strong, or be "*"
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Long expectedVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new InvalidPreconditionException("Invalid If-Match header for appointment " + id + ": " + ifMatch);
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new InvalidPreconditionException("Invalid If-Match header for appointment " + id + ": " + ifMatch);
+        }
+    }
 }
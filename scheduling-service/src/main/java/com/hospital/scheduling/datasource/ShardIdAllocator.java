@@ -0,0 +1,56 @@
+package com.hospital.scheduling.datasource;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Pooled-lo ids from each shard's own appointment_seq: one nextval reserves ALLOCATION_SIZE ids
+// for this instance. The shard number is put in the high bits of every id.
+@Component
+@RequiredArgsConstructor
+public class ShardIdAllocator {
+    
+    public static final String SEQUENCE = "appointment_seq";
+    
+    // Must match the INCREMENT BY of appointment_seq
+    public static final int ALLOCATION_SIZE = 50;
+    
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<Integer, Block> blocks = new ConcurrentHashMap<>();
+    private volatile String nextValueSql;
+    
+    public long nextId(int shard) {
+        Block block = blocks.computeIfAbsent(shard, key -> new Block());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                Long low = shardRouter.inShard(shard, false,
+                        () -> jdbcTemplate.queryForObject(nextValueSql(), Long.class));
+                block.next = low;
+                block.limit = low + ALLOCATION_SIZE;
+            }
+            return shardRouter.composeId(shard, block.next++);
+        }
+    }
+    
+    private String nextValueSql() {
+        if (nextValueSql == null) {
+            nextValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect().getSequenceSupport()
+                    .getSequenceNextValString(SEQUENCE);
+        }
+        return nextValueSql;
+    }
+    
+    private static final class Block {
+        
+        private long next;
+        private long limit;
+    }
+}
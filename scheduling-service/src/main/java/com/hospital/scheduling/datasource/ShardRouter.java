@@ -0,0 +1,191 @@
+package com.hospital.scheduling.datasource;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs units of work on a shard. Appointments are placed by doctorId and their ids carry the
+// shard in the high bits, so lookups by id go straight to one shard. Without sharding
+// everything runs on shard 0 in an ordinary transaction.
+@Component
+@Slf4j
+public class ShardRouter {
+    
+    // The shard sits above a 48-bit per-shard sequence, which keeps ids exact as JSON numbers
+    // (below 2^53) for up to MAX_SHARDS; ids issued before sharding are shard 0
+    private static final int SHARD_SHIFT = 48;
+    private static final int MAX_SHARDS = 32;
+    private static final long SEQUENCE_MASK = (1L << SHARD_SHIFT) - 1;
+    
+    private final int shardCount;
+    private final TransactionTemplate readWrite;
+    private final TransactionTemplate readOnly;
+    private final TransactionTemplate readWriteNew;
+    private final TransactionTemplate readOnlyNew;
+    private final ExecutorService scatterExecutor;
+    
+    public ShardRouter(PlatformTransactionManager transactionManager,
+                       @Value("${scheduling.sharding.enabled:false}") boolean enabled,
+                       @Value("${scheduling.sharding.additional-urls:}") String[] additionalUrls,
+                       @Value("${scheduling.sharding.scatter-threads:8}") int scatterThreads) {
+        this.shardCount = enabled ? additionalUrls.length + 1 : 1;
+        if (shardCount > MAX_SHARDS) {
+            throw new IllegalStateException("At most " + MAX_SHARDS + " shards are supported, got " + shardCount);
+        }
+        this.readWrite = template(transactionManager, false, TransactionDefinition.PROPAGATION_REQUIRED);
+        this.readOnly = template(transactionManager, true, TransactionDefinition.PROPAGATION_REQUIRED);
+        this.readWriteNew = template(transactionManager, false, TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyNew = template(transactionManager, true, TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        
+        if (shardCount > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.scatterExecutor = Executors.newFixedThreadPool(scatterThreads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Appointments are sharded across {} databases", shardCount);
+        } else {
+            this.scatterExecutor = null;
+        }
+    }
+    
+    public int getShardCount() {
+        return shardCount;
+    }
+    
+    public int shardForDoctor(Long doctorId) {
+        return Math.floorMod(doctorId, shardCount);
+    }
+    
+    public int shardOfId(Long id) {
+        return (int) (id >>> SHARD_SHIFT);
+    }
+    
+    public long composeId(int shard, long sequenceValue) {
+        if (sequenceValue > SEQUENCE_MASK) {
+            throw new IllegalStateException("Sequence of shard " + shard + " exhausted the id space");
+        }
+        return ((long) shard << SHARD_SHIFT) | sequenceValue;
+    }
+    
+    // Joins the surrounding transaction when it is on the same shard, otherwise suspends it
+    public <T> T inShard(int shard, boolean readOnly, Supplier<T> action) {
+        Integer previous = ShardRoutingDataSource.currentShard();
+        int current = previous != null ? previous : 0;
+        boolean suspend = current != shard && TransactionSynchronizationManager.isActualTransactionActive();
+        
+        TransactionTemplate template = suspend
+                ? (readOnly ? readOnlyNew : readWriteNew)
+                : (readOnly ? this.readOnly : readWrite);
+        
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return template.execute(status -> action.get());
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+    
+    // Runs a read-only query on every shard in parallel; results are in shard order
+    public <T> List<T> onAllShards(Supplier<T> query) {
+        if (scatterExecutor == null) {
+            return List.of(inShard(0, true, query));
+        }
+        
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> inShard(target, true, query), scatterExecutor));
+        }
+        
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+    
+    // k-way merge of lists that are each already sorted by the comparator
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> comparator) {
+        if (sortedLists.size() == 1) {
+            return sortedLists.get(0);
+        }
+        
+        int total = 0;
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(
+                Math.max(sortedLists.size(), 1), (a, b) -> comparator.compare(a.head(), b.head()));
+        for (List<T> list : sortedLists) {
+            total += list.size();
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list));
+            }
+        }
+        
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+    }
+    
+    private static TransactionTemplate template(PlatformTransactionManager transactionManager,
+                                                boolean readOnly, int propagation) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        template.setPropagationBehavior(propagation);
+        return template;
+    }
+    
+    private static final class Cursor<T> {
+        
+        private final List<T> list;
+        private int index;
+        
+        Cursor(List<T> list) {
+            this.list = list;
+        }
+        
+        T head() {
+            return list.get(index);
+        }
+        
+        boolean advance() {
+            return ++index < list.size();
+        }
+    }
+}
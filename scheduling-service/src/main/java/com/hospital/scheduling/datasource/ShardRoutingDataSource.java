@@ -0,0 +1,54 @@
+package com.hospital.scheduling.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hands out connections from the shard ShardRouter selected for the current thread; shard 0
+// when none is selected. The shard has to be selected before the transaction starts.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+    
+    private final List<HikariDataSource> shards;
+    
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = shards;
+        
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+    
+    static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+    
+    static void setCurrentShard(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT_SHARD.get();
+    }
+    
+    @Override
+    public void close() {
+        for (HikariDataSource shard : shards) {
+            shard.close();
+        }
+    }
+}
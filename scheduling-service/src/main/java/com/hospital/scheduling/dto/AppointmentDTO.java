@@ -22,4 +22,5 @@ public class AppointmentDTO {
     private AppointmentStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long version;
 }
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -14,8 +15,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Appointment {
     
+    // Assigned by ShardIdAllocator from the shard's appointment_seq; a null version marks new rows
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     @Column(nullable = false)
@@ -49,6 +50,11 @@ public class Appointment {
     @Column(nullable = false)
     private LocalDateTime updatedAt = LocalDateTime.now();
     
+    // Existing rows get 0 when the column is added
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+    
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -0,0 +1,40 @@
+package com.hospital.scheduling.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+    
+    @Id
+    @Column(length = 512)
+    private String id;
+    
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+    
+    @Column(nullable = false, length = 4000)
+    private String responseBody;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    
+    // Records are only ever inserted. Otherwise save() would merge into a record that a
+    // concurrent request with the same key has just committed, instead of failing on the key.
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
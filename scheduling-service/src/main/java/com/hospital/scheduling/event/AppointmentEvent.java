@@ -19,4 +19,6 @@ public class AppointmentEvent implements Serializable {
     private String doctorName;
     private LocalDateTime appointmentDate;
     private String eventType; // CREATED, UPDATED, CANCELLED
+    private String status; // SCHEDULED, COMPLETED, CANCELLED, NO_SHOW
+    private Long version; // Orders events of one appointment across lanes
 }
@@ -0,0 +1,27 @@
+package com.hospital.scheduling.event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+// Picks the lane of an event: changes to scheduled appointments that are about to happen go to the
+// urgent lane, so they are not queued behind bulk traffic such as imports of future appointments.
+// Completed, no-show and past appointments are bookkeeping and stay in the bulk lane.
+@Component
+public class AppointmentEventClassifier {
+    
+    @Value("${scheduling.events.urgent-window-hours:24}")
+    private long urgentWindowHours;
+    
+    public boolean isUrgent(AppointmentEvent event) {
+        if (event.getAppointmentDate() == null) {
+            return false;
+        }
+        boolean pending = "CANCELLED".equals(event.getEventType()) || "SCHEDULED".equals(event.getStatus());
+        LocalDateTime now = LocalDateTime.now();
+        return pending
+                && event.getAppointmentDate().isAfter(now)
+                && event.getAppointmentDate().isBefore(now.plusHours(urgentWindowHours));
+    }
+}
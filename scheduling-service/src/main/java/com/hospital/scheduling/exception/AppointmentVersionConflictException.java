@@ -0,0 +1,7 @@
+package com.hospital.scheduling.exception;
+
+public class AppointmentVersionConflictException extends RuntimeException {
+    public AppointmentVersionConflictException(String message) {
+        super(message);
+    }
+}
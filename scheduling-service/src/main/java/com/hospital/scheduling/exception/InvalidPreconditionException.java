@@ -0,0 +1,8 @@
+package com.hospital.scheduling.exception;
+
+// A conditional request header that cannot be parsed; unlike a version mismatch this is a 400
+public class InvalidPreconditionException extends RuntimeException {
+    public InvalidPreconditionException(String message) {
+        super(message);
+    }
+}
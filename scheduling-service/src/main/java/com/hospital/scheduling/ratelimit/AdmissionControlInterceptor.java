@@ -0,0 +1,161 @@
+package com.hospital.scheduling.ratelimit;
+
+import com.hospital.scheduling.exception.RateLimitExceededException;
+import com.hospital.scheduling.exception.ServiceOverloadedException;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admission control for the appointment API: sheds load with 503 when too many requests are in
+// flight or threads are queueing for DB connections, and rate limits writes per principal and
+// role with 429. The queue is read live from every Hikari pool behind the (routing) DataSource,
+// so the signal clears as soon as the backlog does. Buckets that have refilled completely are
+// dropped periodically, so one-off principals do not accumulate.
+@Component
+@Slf4j
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+    
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<HikariDataSource> pools;
+    private final Counter rateLimited;
+    private final Counter shed;
+    
+    @Value("${scheduling.rate-limit.capacity:20}")
+    private int capacity;
+    
+    @Value("${scheduling.rate-limit.refill-per-second:10}")
+    private double refillPerSecond;
+    
+    @Value("${scheduling.load-shedding.max-in-flight:200}")
+    private int maxInFlight;
+    
+    @Value("${scheduling.load-shedding.max-pending-connections:20}")
+    private int maxPendingConnections;
+    
+    @Value("${scheduling.load-shedding.retry-after-seconds:1}")
+    private long sheddingRetryAfterSeconds;
+    
+    public AdmissionControlInterceptor(MeterRegistry meterRegistry, DataSource dataSource) {
+        this.pools = hikariPoolsOf(dataSource);
+        this.rateLimited = Counter.builder("scheduling.admission.rejected")
+                .tag("reason", "rate_limit")
+                .register(meterRegistry);
+        this.shed = Counter.builder("scheduling.admission.rejected")
+                .tag("reason", "overload")
+                .register(meterRegistry);
+        meterRegistry.gauge("scheduling.admission.in_flight", inFlight);
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (isOverloaded()) {
+            shed.increment();
+            throw new ServiceOverloadedException("Service is overloaded, please retry later", sheddingRetryAfterSeconds);
+        }
+        
+        if (isWrite(request.getMethod())) {
+            String key = bucketKey(SecurityContextHolder.getContext().getAuthentication());
+            long waitNanos = buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, refillPerSecond))
+                    .tryAcquire(System.nanoTime());
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                throw new RateLimitExceededException("Rate limit exceeded for " + key,
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+            }
+        }
+        
+        inFlight.incrementAndGet();
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        inFlight.decrementAndGet();
+    }
+    
+    @Scheduled(fixedDelayString = "${scheduling.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        evictIdleBuckets(System.nanoTime());
+    }
+    
+    // Removes an entry only while it still maps to the bucket that was found full. A request
+    // racing with the removal can take one token from the dropped bucket; the next one starts full.
+    void evictIdleBuckets(long nowNanos) {
+        buckets.entrySet().removeIf(entry -> entry.getValue().isFull(nowNanos));
+    }
+    
+    int bucketCount() {
+        return buckets.size();
+    }
+    
+    private boolean isOverloaded() {
+        if (inFlight.get() >= maxInFlight) {
+            return true;
+        }
+        int awaiting = 0;
+        for (HikariDataSource dataSource : pools) {
+            // The pool MXBean only exists once the pool has started
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool != null) {
+                awaiting += pool.getThreadsAwaitingConnection();
+            }
+        }
+        return awaiting > maxPendingConnections;
+    }
+    
+    private static boolean isWrite(String method) {
+        return "POST".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+    
+    private static String bucketKey(Authentication authentication) {
+        if (authentication == null) {
+            return "anonymous";
+        }
+        String role = "";
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            role = authority.getAuthority();
+            break;
+        }
+        return role + ":" + authentication.getName();
+    }
+    
+    // Shards and read replicas each have their own pool behind a routing DataSource
+    private static List<HikariDataSource> hikariPoolsOf(DataSource dataSource) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        try {
+            if (dataSource.isWrapperFor(AbstractRoutingDataSource.class)) {
+                for (DataSource target : dataSource.unwrap(AbstractRoutingDataSource.class)
+                        .getResolvedDataSources().values()) {
+                    pools.addAll(hikariPoolsOf(target));
+                }
+            } else if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                pools.add(dataSource.unwrap(HikariDataSource.class));
+            }
+        } catch (SQLException e) {
+            log.warn("Could not access connection pool for load shedding", e);
+        }
+        return pools;
+    }
+}
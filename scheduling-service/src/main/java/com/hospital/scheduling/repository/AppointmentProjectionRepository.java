@@ -0,0 +1,13 @@
+package com.hospital.scheduling.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface AppointmentProjectionRepository {
+    
+    // Selects only the given Appointment attributes, ordered by appointment date and id; null
+    // filters are ignored
+    List<Map<String, Object>> findFields(Set<String> fields, Long id, Long patientId, LocalDateTime appointmentDateAfter);
+}
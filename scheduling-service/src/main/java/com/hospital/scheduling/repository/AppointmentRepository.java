@@ -2,13 +2,16 @@ package com.hospital.scheduling.repository;
 
 import com.hospital.scheduling.entity.Appointment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, AppointmentProjectionRepository {
     
     List<Appointment> findByPatientId(Long patientId);
     
@@ -17,4 +20,34 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     List<Appointment> findByPatientIdAndAppointmentDateGreaterThan(Long patientId, LocalDateTime date);
     
     List<Appointment> findByAppointmentDateBetween(LocalDateTime start, LocalDateTime end);
+    
+    // Sorted variants for merging the results of several shards
+    List<Appointment> findAllByOrderByAppointmentDateAscIdAsc();
+    
+    List<Appointment> findByPatientIdOrderByAppointmentDateAscIdAsc(Long patientId);
+    
+    List<Appointment> findByPatientIdAndAppointmentDateGreaterThanOrderByAppointmentDateAscIdAsc(Long patientId,
+                                                                                                 LocalDateTime date);
+    
+    // Ownership check on the primary key, no entity is loaded
+    boolean existsByIdAndPatientId(Long id, Long patientId);
+    
+    @Query("SELECT a.version FROM Appointment a WHERE a.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+    
+    @Query("SELECT count(a) AS count, coalesce(sum(a.id), 0) AS idSum, coalesce(sum(a.version), 0) AS versionSum " +
+           "FROM Appointment a WHERE a.patientId = :patientId")
+    ListFingerprint fingerprintByPatientId(@Param("patientId") Long patientId);
+    
+    @Query("SELECT count(a) AS count, coalesce(sum(a.id), 0) AS idSum, coalesce(sum(a.version), 0) AS versionSum " +
+           "FROM Appointment a WHERE a.patientId = :patientId AND a.appointmentDate > :date")
+    ListFingerprint fingerprintByPatientIdAndAppointmentDateGreaterThan(@Param("patientId") Long patientId,
+                                                                       @Param("date") LocalDateTime date);
+    
+    // Changes whenever a row of the list is added, removed or updated
+    interface ListFingerprint {
+        Long getCount();
+        Long getIdSum();
+        Long getVersionSum();
+    }
 }
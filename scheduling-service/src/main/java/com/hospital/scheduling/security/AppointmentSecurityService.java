@@ -1,47 +1,56 @@
 package com.hospital.scheduling.security;
 
-import com.hospital.scheduling.entity.Appointment;
-import com.hospital.scheduling.repository.AppointmentRepository;
+import com.hospital.scheduling.service.AppointmentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
 @Component("appointmentSecurity")
 @RequiredArgsConstructor
 public class AppointmentSecurityService {
     
-    private final AppointmentRepository appointmentRepository;
+    // Doctors and nurses can access all appointments
+    private static final Set<String> STAFF_AUTHORITIES = Set.of("ROLE_DOCTOR", "ROLE_NURSE");
+    
+    private static final Set<String> PATIENT_AUTHORITIES = Set.of("ROLE_PATIENT");
+    
+    private final AppointmentService appointmentService;
     
     public boolean canAccess(Long appointmentId, Authentication authentication) {
-        // Doctors and nurses can access all appointments
-        if (authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_DOCTOR")) ||
-            authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_NURSE"))) {
+        if (hasAny(authentication, STAFF_AUTHORITIES)) {
             return true;
         }
         
-        // Patients can only access their own appointments
-        if (authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_PATIENT"))) {
-            Appointment appointment = appointmentRepository.findById(appointmentId).orElse(null);
-            if (appointment != null) {
-                // In a real system, we would get the patient ID from the authenticated user
-                // For simplicity, we're checking if the username matches the patient name
-                return appointment.getPatientName().equalsIgnoreCase(authentication.getName());
-            }
-        }
-        
-        return false;
+        // Patients can only access their own appointments; checked without loading the appointment
+        Long patientId = patientIdOf(authentication);
+        return patientId != null && appointmentService.isPatientAppointment(appointmentId, patientId);
     }
     
     public boolean canAccessPatientAppointments(Long patientId, Authentication authentication) {
-        // Doctors and nurses can access all patient appointments
-        if (authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_DOCTOR")) ||
-            authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_NURSE"))) {
+        if (hasAny(authentication, STAFF_AUTHORITIES)) {
             return true;
         }
         
         // Patients can only access their own appointments
-        // In a real system, we would compare the patientId with the authenticated user's ID
+        return patientId.equals(patientIdOf(authentication));
+    }
+    
+    private static Long patientIdOf(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof HospitalUser user && hasAny(authentication, PATIENT_AUTHORITIES)) {
+            return user.getPatientId();
+        }
+        return null;
+    }
+    
+    private static boolean hasAny(Authentication authentication, Set<String> authorities) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authorities.contains(authority.getAuthority())) {
+                return true;
+            }
+        }
         return false;
     }
 }
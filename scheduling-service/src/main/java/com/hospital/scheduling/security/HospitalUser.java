@@ -0,0 +1,20 @@
+package com.hospital.scheduling.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+// The authenticated principal; patients carry the patientId their appointments are stored under
+@Getter
+public class HospitalUser extends User {
+    
+    private final Long patientId;
+    
+    public HospitalUser(String username, String password, Collection<? extends GrantedAuthority> authorities,
+                        Long patientId) {
+        super(username, password, authorities);
+        this.patientId = patientId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.hospital.scheduling.security;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class HospitalUserDetailsService implements UserDetailsService {
+    
+    private final Map<String, HospitalUser> users = new HashMap<>();
+    
+    public HospitalUserDetailsService(HospitalUser... users) {
+        for (HospitalUser user : users) {
+            this.users.put(user.getUsername().toLowerCase(Locale.ROOT), user);
+        }
+    }
+    
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        HospitalUser user = users.get(username.toLowerCase(Locale.ROOT));
+        if (user == null) {
+            throw new UsernameNotFoundException(username);
+        }
+        
+        // Authentication erases the password of the returned user, so hand out a copy
+        return new HospitalUser(user.getUsername(), user.getPassword(), user.getAuthorities(), user.getPatientId());
+    }
+}
@@ -1,30 +1,60 @@
 package com.hospital.scheduling.service;
 
+import com.hospital.scheduling.datasource.ShardIdAllocator;
+import com.hospital.scheduling.datasource.ShardRouter;
 import com.hospital.scheduling.dto.AppointmentDTO;
 import com.hospital.scheduling.dto.CreateAppointmentRequest;
 import com.hospital.scheduling.dto.UpdateAppointmentRequest;
 import com.hospital.scheduling.entity.Appointment;
+import com.hospital.scheduling.entity.AppointmentStatus;
 import com.hospital.scheduling.event.AppointmentEvent;
+import com.hospital.scheduling.event.AppointmentEventClassifier;
 import com.hospital.scheduling.exception.AppointmentNotFoundException;
+import com.hospital.scheduling.exception.AppointmentVersionConflictException;
+import com.hospital.scheduling.exception.InvalidFieldSelectionException;
 import com.hospital.scheduling.repository.AppointmentRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Observed(name = "appointment.service")
 public class AppointmentService {
     
+    private static final Set<String> SELECTABLE_FIELDS = Set.of(
+            "id", "patientId", "patientName", "patientEmail", "doctorId", "doctorName",
+            "appointmentDate", "notes", "status", "createdAt", "updatedAt", "version");
+    
+    // The order every shard returns its list in, so the parts can be merged
+    private static final Comparator<Appointment> SHARD_ORDER =
+            Comparator.comparing(Appointment::getAppointmentDate).thenComparing(Appointment::getId);
+    
+    // SHARD_ORDER for rows of a field selection
+    private static final Comparator<Map<String, Object>> SHARD_ROW_ORDER =
+            Comparator.comparing((Map<String, Object> row) -> (LocalDateTime) row.get("appointmentDate"))
+                    .thenComparing(row -> (Long) row.get("id"));
+    
     private final AppointmentRepository appointmentRepository;
+    private final ShardRouter shardRouter;
+    private final ShardIdAllocator shardIdAllocator;
     private final RabbitTemplate rabbitTemplate;
+    private final AppointmentEventClassifier eventClassifier;
     
     @Value("${rabbitmq.exchange.name}")
     private String exchangeName;
@@ -35,105 +65,209 @@ public class AppointmentService {
     @Value("${rabbitmq.routing-key.updated}")
     private String updatedRoutingKey;
     
-    @Transactional
+    @Value("${rabbitmq.routing-key.created-urgent}")
+    private String createdUrgentRoutingKey;
+    
+    @Value("${rabbitmq.routing-key.updated-urgent}")
+    private String updatedUrgentRoutingKey;
+    
+    // The shard createAppointment writes to
+    public int shardFor(CreateAppointmentRequest request) {
+        return shardRouter.shardForDoctor(request.getDoctorId());
+    }
+    
+    // The shard updates and deletes of the appointment write to
+    public int shardFor(Long id) {
+        return shardRouter.shardOfId(id);
+    }
+    
     public AppointmentDTO createAppointment(CreateAppointmentRequest request) {
         log.info("Creating appointment for patient: {}", request.getPatientName());
         
-        Appointment appointment = new Appointment();
-        appointment.setPatientId(request.getPatientId());
-        appointment.setPatientName(request.getPatientName());
-        appointment.setPatientEmail(request.getPatientEmail());
-        appointment.setDoctorId(request.getDoctorId());
-        appointment.setDoctorName(request.getDoctorName());
-        appointment.setAppointmentDate(request.getAppointmentDate());
-        appointment.setNotes(request.getNotes());
-        
-        Appointment saved = appointmentRepository.save(appointment);
-        
-        // Publish event to RabbitMQ
-        publishAppointmentEvent(saved, "CREATED", createdRoutingKey);
-        
-        return mapToDTO(saved);
+        int shard = shardFor(request);
+        return shardRouter.inShard(shard, false, () -> {
+            Appointment appointment = new Appointment();
+            appointment.setId(shardIdAllocator.nextId(shard));
+            appointment.setPatientId(request.getPatientId());
+            appointment.setPatientName(request.getPatientName());
+            appointment.setPatientEmail(request.getPatientEmail());
+            appointment.setDoctorId(request.getDoctorId());
+            appointment.setDoctorName(request.getDoctorName());
+            appointment.setAppointmentDate(request.getAppointmentDate());
+            appointment.setNotes(request.getNotes());
+            
+            Appointment saved = appointmentRepository.save(appointment);
+            
+            // Publish event to RabbitMQ
+            publishAppointmentEvent(saved, "CREATED", createdRoutingKey, createdUrgentRoutingKey);
+            
+            return mapToDTO(saved);
+        });
     }
     
-    @Transactional
     public AppointmentDTO updateAppointment(Long id, UpdateAppointmentRequest request) {
+        return updateAppointment(id, request, null);
+    }
+    
+    public AppointmentDTO updateAppointment(Long id, UpdateAppointmentRequest request, Long expectedVersion) {
         log.info("Updating appointment: {}", id);
         
-        Appointment appointment = appointmentRepository.findById(id)
-                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
-        
-        if (request.getAppointmentDate() != null) {
-            appointment.setAppointmentDate(request.getAppointmentDate());
-        }
-        if (request.getNotes() != null) {
-            appointment.setNotes(request.getNotes());
-        }
-        if (request.getStatus() != null) {
-            appointment.setStatus(request.getStatus());
-        }
-        
-        Appointment updated = appointmentRepository.save(appointment);
-        
-        // Publish event to RabbitMQ
-        publishAppointmentEvent(updated, "UPDATED", updatedRoutingKey);
-        
-        return mapToDTO(updated);
+        return shardRouter.inShard(shardRouter.shardOfId(id), false, () -> {
+            Appointment appointment = appointmentRepository.findById(id)
+                    .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
+            
+            if (expectedVersion != null && !expectedVersion.equals(appointment.getVersion())) {
+                throw new AppointmentVersionConflictException(
+                        "Appointment " + id + " has version " + appointment.getVersion() + ", expected " + expectedVersion);
+            }
+            
+            if (request.getAppointmentDate() != null) {
+                appointment.setAppointmentDate(request.getAppointmentDate());
+            }
+            if (request.getNotes() != null) {
+                appointment.setNotes(request.getNotes());
+            }
+            if (request.getStatus() != null) {
+                appointment.setStatus(request.getStatus());
+            }
+            
+            // Flush so a concurrent update fails here on the version check rather than at commit
+            Appointment updated = appointmentRepository.saveAndFlush(appointment);
+            
+            // Publish event to RabbitMQ
+            publishAppointmentEvent(updated, "UPDATED", updatedRoutingKey, updatedUrgentRoutingKey);
+            
+            return mapToDTO(updated);
+        });
     }
     
-    @Transactional(readOnly = true)
     public AppointmentDTO getAppointment(Long id) {
-        log.info("Fetching appointment: {}", id);
+        log.debug("Fetching appointment: {}", id);
         
-        Appointment appointment = appointmentRepository.findById(id)
+        Appointment appointment = shardRouter.inShard(shardRouter.shardOfId(id), true,
+                        () -> appointmentRepository.findById(id))
                 .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
         
         return mapToDTO(appointment);
     }
     
-    @Transactional(readOnly = true)
+    public boolean isPatientAppointment(Long id, Long patientId) {
+        return shardRouter.inShard(shardRouter.shardOfId(id), true,
+                () -> appointmentRepository.existsByIdAndPatientId(id, patientId));
+    }
+    
+    public Optional<Long> getAppointmentVersion(Long id) {
+        return shardRouter.inShard(shardRouter.shardOfId(id), true, () -> appointmentRepository.findVersionById(id));
+    }
+    
+    public String getPatientAppointmentsFingerprint(Long patientId) {
+        return fingerprint(shardRouter.onAllShards(() -> appointmentRepository.fingerprintByPatientId(patientId)));
+    }
+    
+    public String getFuturePatientAppointmentsFingerprint(Long patientId) {
+        LocalDateTime now = LocalDateTime.now();
+        return fingerprint(shardRouter.onAllShards(() -> appointmentRepository
+                .fingerprintByPatientIdAndAppointmentDateGreaterThan(patientId, now)));
+    }
+    
+    public Map<String, Object> getAppointmentFields(Long id, Set<String> fields) {
+        return shardRouter.inShard(shardRouter.shardOfId(id), true,
+                        () -> appointmentRepository.findFields(fields, id, null, null)).stream()
+                .findFirst()
+                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
+    }
+    
+    // The version comes from the same query as the fields, so an ETag built from it matches them;
+    // it stays in the fields only when it was selected
+    public VersionedFields getVersionedAppointmentFields(Long id, Set<String> fields) {
+        Set<String> selected = new LinkedHashSet<>(fields);
+        selected.add("version");
+        Map<String, Object> row = getAppointmentFields(id, selected);
+        Long version = (Long) row.get("version");
+        if (selected.size() > fields.size()) {
+            row.keySet().retainAll(fields);
+        }
+        return new VersionedFields(version, row);
+    }
+    
+    public List<Map<String, Object>> getAllAppointmentFields(Set<String> fields) {
+        return findFieldsOnAllShards(fields, null, null);
+    }
+    
+    public List<Map<String, Object>> getPatientAppointmentFields(Long patientId, Set<String> fields) {
+        return findFieldsOnAllShards(fields, patientId, null);
+    }
+    
+    public List<Map<String, Object>> getFuturePatientAppointmentFields(Long patientId, Set<String> fields) {
+        return findFieldsOnAllShards(fields, patientId, LocalDateTime.now());
+    }
+    
+    // Parses a fields= selection against the AppointmentDTO properties, keeping request order
+    public Set<String> parseFields(String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!SELECTABLE_FIELDS.contains(name)) {
+                throw new InvalidFieldSelectionException("Unknown field: " + name + ", expected any of " + SELECTABLE_FIELDS);
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) {
+            throw new InvalidFieldSelectionException("At least one field must be selected");
+        }
+        return selected;
+    }
+    
     public List<AppointmentDTO> getAllAppointments() {
-        log.info("Fetching all appointments");
+        log.debug("Fetching all appointments");
         
-        return appointmentRepository.findAll().stream()
+        return ShardRouter.mergeSorted(shardRouter.onAllShards(
+                        appointmentRepository::findAllByOrderByAppointmentDateAscIdAsc), SHARD_ORDER).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
     
-    @Transactional(readOnly = true)
     public List<AppointmentDTO> getPatientAppointments(Long patientId) {
-        log.info("Fetching appointments for patient: {}", patientId);
+        log.debug("Fetching appointments for patient: {}", patientId);
         
-        return appointmentRepository.findByPatientId(patientId).stream()
+        return ShardRouter.mergeSorted(shardRouter.onAllShards(
+                        () -> appointmentRepository.findByPatientIdOrderByAppointmentDateAscIdAsc(patientId)),
+                        SHARD_ORDER).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
     
-    @Transactional(readOnly = true)
     public List<AppointmentDTO> getFuturePatientAppointments(Long patientId) {
-        log.info("Fetching future appointments for patient: {}", patientId);
+        log.debug("Fetching future appointments for patient: {}", patientId);
         
-        return appointmentRepository
-                .findByPatientIdAndAppointmentDateGreaterThan(patientId, LocalDateTime.now())
-                .stream()
+        LocalDateTime now = LocalDateTime.now();
+        return ShardRouter.mergeSorted(shardRouter.onAllShards(() -> appointmentRepository
+                        .findByPatientIdAndAppointmentDateGreaterThanOrderByAppointmentDateAscIdAsc(patientId, now)),
+                        SHARD_ORDER).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
     
-    @Transactional
     public void deleteAppointment(Long id) {
         log.info("Deleting appointment: {}", id);
         
-        Appointment appointment = appointmentRepository.findById(id)
-                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
-        
-        appointmentRepository.delete(appointment);
-        
-        // Publish cancellation event
-        publishAppointmentEvent(appointment, "CANCELLED", updatedRoutingKey);
+        shardRouter.inShard(shardRouter.shardOfId(id), false, () -> {
+            Appointment appointment = appointmentRepository.findById(id)
+                    .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
+            
+            appointmentRepository.delete(appointment);
+            
+            // Publish cancellation event
+            publishAppointmentEvent(appointment, "CANCELLED", updatedRoutingKey, updatedUrgentRoutingKey);
+            return null;
+        });
     }
     
-    private void publishAppointmentEvent(Appointment appointment, String eventType, String routingKey) {
+    private void publishAppointmentEvent(Appointment appointment, String eventType,
+                                         String routingKey, String urgentRoutingKey) {
         AppointmentEvent event = new AppointmentEvent(
                 appointment.getId(),
                 appointment.getPatientId(),
@@ -142,13 +276,63 @@ public class AppointmentService {
                 appointment.getDoctorId(),
                 appointment.getDoctorName(),
                 appointment.getAppointmentDate(),
-                eventType
+                eventType,
+                "CANCELLED".equals(eventType) ? AppointmentStatus.CANCELLED.name() : appointment.getStatus().name(),
+                // The deletion does not bump the version, but must still supersede the last update
+                "CANCELLED".equals(eventType) ? appointment.getVersion() + 1 : appointment.getVersion()
         );
         
-        log.info("Publishing {} event for appointment: {}", eventType, appointment.getId());
+        boolean urgent = eventClassifier.isUrgent(event);
+        String lane = urgent ? urgentRoutingKey : routingKey;
+        
+        // Sent once the surrounding transaction commits, so a write that rolls back (e.g. the
+        // loser of an idempotency race) never announces an appointment that does not exist
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event, lane, urgent);
+                }
+            });
+        } else {
+            send(event, lane, urgent);
+        }
+    }
+    
+    private void send(AppointmentEvent event, String routingKey, boolean urgent) {
+        log.debug("Publishing {} event for appointment {} ({} lane)", event.getEventType(), event.getAppointmentId(),
+                urgent ? "urgent" : "bulk");
         rabbitTemplate.convertAndSend(exchangeName, routingKey, event);
     }
     
+    private String fingerprint(List<AppointmentRepository.ListFingerprint> shards) {
+        long count = 0;
+        long idSum = 0;
+        long versionSum = 0;
+        for (AppointmentRepository.ListFingerprint fingerprint : shards) {
+            count += fingerprint.getCount();
+            idSum += fingerprint.getIdSum();
+            versionSum += fingerprint.getVersionSum();
+        }
+        return Long.toHexString(count) + "-" + Long.toHexString(idSum) + "-" + Long.toHexString(versionSum);
+    }
+    
+    // The sort keys are selected as well so the shards' rows can be merged, then dropped again
+    // unless the caller asked for them
+    private List<Map<String, Object>> findFieldsOnAllShards(Set<String> fields, Long patientId,
+                                                            LocalDateTime appointmentDateAfter) {
+        Set<String> selected = new LinkedHashSet<>(fields);
+        selected.add("appointmentDate");
+        selected.add("id");
+        List<Map<String, Object>> rows = ShardRouter.mergeSorted(shardRouter.onAllShards(
+                () -> appointmentRepository.findFields(selected, null, patientId, appointmentDateAfter)),
+                SHARD_ROW_ORDER);
+        if (selected.size() > fields.size()) {
+            rows.forEach(row -> row.keySet().retainAll(fields));
+        }
+        return rows;
+    }
+    
     private AppointmentDTO mapToDTO(Appointment appointment) {
         return new AppointmentDTO(
                 appointment.getId(),
@@ -161,7 +345,10 @@ public class AppointmentService {
                 appointment.getNotes(),
                 appointment.getStatus(),
                 appointment.getCreatedAt(),
-                appointment.getUpdatedAt()
+                appointment.getUpdatedAt(),
+                appointment.getVersion()
         );
     }
+    
+    public record VersionedFields(Long version, Map<String, Object> fields) {}
 }
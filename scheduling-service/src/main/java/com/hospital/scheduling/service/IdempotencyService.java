@@ -0,0 +1,186 @@
+package com.hospital.scheduling.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.scheduling.datasource.ShardRouter;
+import com.hospital.scheduling.dto.AppointmentDTO;
+import com.hospital.scheduling.entity.IdempotencyRecord;
+import com.hospital.scheduling.exception.IdempotencyKeyConflictException;
+import com.hospital.scheduling.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Replays the original response for retried requests carrying the same Idempotency-Key.
+// Responses live in a bounded in-memory LRU backed by the idempotency_keys table, and
+// concurrent requests with the same key wait for the first one instead of running again.
+// Each record is stored on the shard its action writes to.
+@Service
+@Slf4j
+public class IdempotencyService {
+    
+    private final IdempotencyRecordRepository repository;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final Map<String, IdempotencyRecord> cache;
+    private final Map<String, CompletableFuture<IdempotentResult>> inFlight = new ConcurrentHashMap<>();
+    
+    @Value("${scheduling.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+    
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              ShardRouter shardRouter,
+                              ObjectMapper objectMapper,
+                              @Value("${scheduling.idempotency.cache-size:10000}") int cacheSize) {
+        this.repository = repository;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+    
+    // shard must be the one the action writes to
+    public IdempotentResult execute(String scope, String key, int shard, Object request,
+                                    Supplier<AppointmentDTO> action) {
+        String id = scope + ":" + key;
+        String requestHash = hash(request);
+        
+        IdempotencyRecord cached = cache.get(id);
+        if (cached != null && cached.getExpiresAt().isAfter(LocalDateTime.now())) {
+            return replay(cached, requestHash);
+        }
+        
+        CompletableFuture<IdempotentResult> flight = new CompletableFuture<>();
+        CompletableFuture<IdempotentResult> existing = inFlight.putIfAbsent(id, flight);
+        if (existing != null) {
+            IdempotentResult result = join(existing);
+            if (!result.requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyConflictException("Idempotency-Key was already used with a different request");
+            }
+            return new IdempotentResult(result.body(), true, requestHash);
+        }
+        
+        try {
+            IdempotentResult result = executeOnce(id, shard, requestHash, action);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, flight);
+        }
+    }
+    
+    private IdempotentResult executeOnce(String id, int shard, String requestHash, Supplier<AppointmentDTO> action) {
+        // Every shard is asked, so a key reused for another doctor's appointment still conflicts
+        IdempotencyRecord stored = shardRouter.onAllShards(() -> repository.findById(id)).stream()
+                .flatMap(Optional::stream)
+                .filter(record -> record.getExpiresAt().isAfter(LocalDateTime.now()))
+                .findFirst()
+                .orElse(null);
+        if (stored != null) {
+            cache.put(id, stored);
+            return replay(stored, requestHash);
+        }
+        
+        try {
+            // The action and its idempotency record commit together on the action's shard, so a
+            // retry either sees the record or finds that nothing was written
+            IdempotencyRecord record = shardRouter.inShard(shard, false, () -> {
+                AppointmentDTO body = action.get();
+                LocalDateTime now = LocalDateTime.now();
+                IdempotencyRecord newRecord = new IdempotencyRecord(
+                        id, requestHash, serialize(body), now, now.plusMinutes(ttlMinutes));
+                repository.saveAndFlush(newRecord);
+                return newRecord;
+            });
+            cache.put(id, record);
+            return new IdempotentResult(deserialize(record.getResponseBody()), false, requestHash);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance stored the same key first; its transaction won and ours, with
+            // everything the action wrote, was rolled back
+            IdempotencyRecord winner = shardRouter.inShard(shard, false, () -> repository.findById(id))
+                    .orElseThrow(() -> e);
+            cache.put(id, winner);
+            return replay(winner, requestHash);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${scheduling.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int purged = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            purged += shardRouter.inShard(shard, false, () -> repository.deleteExpired(now));
+        }
+        cache.values().removeIf(record -> record.getExpiresAt().isBefore(now));
+        log.debug("Purged {} expired idempotency keys", purged);
+    }
+    
+    private IdempotentResult replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key was already used with a different request");
+        }
+        return new IdempotentResult(deserialize(record.getResponseBody()), true, requestHash);
+    }
+    
+    private IdempotentResult join(CompletableFuture<IdempotentResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash request", e);
+        }
+    }
+    
+    private String serialize(AppointmentDTO body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+    }
+    
+    private AppointmentDTO deserialize(String body) {
+        try {
+            return objectMapper.readValue(body, AppointmentDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not deserialize stored response", e);
+        }
+    }
+    
+    public record IdempotentResult(AppointmentDTO body, boolean replayed, String requestHash) {}
+}
@@ -0,0 +1,33 @@
+-- Runs on every shard at startup; must stay valid on both PostgreSQL and H2
+CREATE TABLE IF NOT EXISTS appointments (
+    id BIGINT NOT NULL PRIMARY KEY,
+    patient_id BIGINT NOT NULL,
+    patient_name VARCHAR(255) NOT NULL,
+    patient_email VARCHAR(255) NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    doctor_name VARCHAR(255) NOT NULL,
+    appointment_date TIMESTAMP(6) NOT NULL,
+    notes VARCHAR(500),
+    status VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    version BIGINT DEFAULT 0
+);
+
+-- INCREMENT BY must match ShardIdAllocator.ALLOCATION_SIZE
+CREATE SEQUENCE IF NOT EXISTS appointment_seq START WITH 1 INCREMENT BY 50;
+
+-- Patient lookups are scattered to every shard
+CREATE INDEX IF NOT EXISTS idx_appointments_patient_date ON appointments (patient_id, appointment_date);
+
+-- Idempotency records are kept on the shard of the appointment they belong to, so both commit
+-- together; on shard 0 the schema update has already created the table
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id VARCHAR(512) NOT NULL PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    response_body VARCHAR(4000) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,66 @@
+package com.hospital.scheduling.controller;
+
+import com.hospital.scheduling.exception.GlobalExceptionHandler;
+import com.hospital.scheduling.service.AppointmentService;
+import com.hospital.scheduling.service.AppointmentService.VersionedFields;
+import com.hospital.scheduling.service.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Without the security filter chain; the service is mocked
+class AppointmentControllerTest {
+    
+    private final AppointmentService appointmentService = mock(AppointmentService.class);
+    private final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new AppointmentController(appointmentService, mock(IdempotencyService.class)))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+    
+    @Test
+    void malformedIfMatchIsABadRequest() throws Exception {
+        for (String ifMatch : new String[] {"3", "\"three\"", "W/\"3\""}) {
+            mockMvc.perform(put("/api/appointments/1")
+                            .header(HttpHeaders.IF_MATCH, ifMatch)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"notes\":\"x\"}"))
+                    .andExpect(status().isBadRequest());
+        }
+        verify(appointmentService, never()).updateAppointment(anyLong(), any(), any());
+    }
+    
+    @Test
+    void fieldSelectionTagsTheVersionReadWithTheFields() throws Exception {
+        Set<String> notes = Set.of("notes");
+        // Updated between the If-None-Match check and the read of the body
+        when(appointmentService.parseFields("notes")).thenReturn(notes);
+        when(appointmentService.getAppointmentVersion(1L)).thenReturn(Optional.of(3L));
+        Map<String, Object> fields = new LinkedHashMap<>(Map.of("notes", "after the update"));
+        when(appointmentService.getVersionedAppointmentFields(1L, notes)).thenReturn(new VersionedFields(4L, fields));
+        
+        mockMvc.perform(get("/api/appointments/1").param("fields", "notes").header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4-" + Integer.toHexString("notes".hashCode()) + "\""))
+                .andExpect(jsonPath("$.notes").value("after the update"))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+}
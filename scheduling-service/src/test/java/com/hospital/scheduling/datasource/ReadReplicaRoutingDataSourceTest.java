@@ -0,0 +1,114 @@
+package com.hospital.scheduling.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Three in-memory H2 databases stand in for the primary and two replicas; each one holds its
+// own name, so a query shows where the routing data source sent it
+class ReadReplicaRoutingDataSourceTest {
+    
+    private final AtomicReference<String> session = new AtomicReference<>();
+    private HikariDataSource primary;
+    private HikariDataSource replica0;
+    private HikariDataSource replica1;
+    private ReadReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica0 = database("replica-0");
+        replica1 = database("replica-1");
+        routing = new ReadReplicaRoutingDataSource(primary, List.of(replica0, replica1), session::get, 200, 0);
+        jdbcTemplate = new JdbcTemplate(routing);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        routing.close();
+    }
+    
+    @Test
+    void writesGoToThePrimary() {
+        assertThat(inTransaction(false)).isEqualTo("primary");
+        assertThat(outsideTransaction()).isEqualTo("primary");
+    }
+    
+    @Test
+    void readOnlyTransactionsRoundRobinOverTheReplicas() {
+        assertThat(List.of(inTransaction(true), inTransaction(true), inTransaction(true), inTransaction(true)))
+                .containsExactly("replica-0", "replica-1", "replica-0", "replica-1");
+    }
+    
+    @Test
+    void sessionReadsItsOwnWritesFromThePrimaryUntilTheWindowPasses() throws InterruptedException {
+        session.set("alice");
+        inTransaction(false);
+        assertThat(inTransaction(true)).isEqualTo("primary");
+        
+        session.set("bob");
+        assertThat(inTransaction(true)).startsWith("replica-");
+        
+        session.set("alice");
+        Thread.sleep(250);
+        assertThat(inTransaction(true)).startsWith("replica-");
+    }
+    
+    @Test
+    void unhealthyReplicasAreSkippedAndThePrimaryServesWhenNoneIsLeft() {
+        replica0.close();
+        routing.checkReplicas();
+        assertThat(List.of(inTransaction(true), inTransaction(true))).containsOnly("replica-1");
+        
+        replica1.close();
+        routing.checkReplicas();
+        assertThat(inTransaction(true)).isEqualTo("primary");
+    }
+    
+    @Test
+    void nestedTransactionsRouteByTheInnermost() {
+        ReadReplicaRoutingDataSource.beginTransaction(false);
+        try {
+            assertThat(inTransaction(true)).startsWith("replica-");
+            assertThat(currentDatabase()).isEqualTo("primary");
+        } finally {
+            ReadReplicaRoutingDataSource.endTransaction();
+        }
+    }
+    
+    private String inTransaction(boolean readOnly) {
+        ReadReplicaRoutingDataSource.beginTransaction(readOnly);
+        try {
+            return currentDatabase();
+        } finally {
+            ReadReplicaRoutingDataSource.endTransaction();
+        }
+    }
+    
+    private String outsideTransaction() {
+        return currentDatabase();
+    }
+    
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+    
+    private static HikariDataSource database(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(2);
+        JdbcTemplate setup = new JdbcTemplate(dataSource);
+        setup.execute("CREATE TABLE node (name VARCHAR(20))");
+        setup.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,205 @@
+package com.hospital.scheduling.ratelimit;
+
+import com.hospital.scheduling.datasource.ShardRoutingDataSource;
+import com.hospital.scheduling.exception.GlobalExceptionHandler;
+import com.hospital.scheduling.exception.ServiceOverloadedException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AdmissionControlInterceptorTest {
+    
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    
+    @AfterEach
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+        SecurityContextHolder.clearContext();
+    }
+    
+    @Test
+    void writesOverTheRateAreAnsweredWith429AndRetryAfter() throws Exception {
+        AdmissionControlInterceptor interceptor = interceptor(pool(1), 20, 200);
+        // One write, then one every two seconds
+        ReflectionTestUtils.setField(interceptor, "capacity", 1);
+        ReflectionTestUtils.setField(interceptor, "refillPerSecond", 0.5);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WriteController())
+                .addInterceptors(interceptor)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("nurse", null, "ROLE_NURSE"));
+        
+        mockMvc.perform(post("/write")).andExpect(status().isOk());
+        mockMvc.perform(post("/write"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+        // Reads are not rate limited
+        mockMvc.perform(get("/write")).andExpect(status().isOk());
+    }
+    
+    @Test
+    void bucketsAreDroppedOnceTheyHaveRefilled() {
+        AdmissionControlInterceptor interceptor = interceptor(pool(1), 20, 200);
+        ReflectionTestUtils.setField(interceptor, "capacity", 2);
+        ReflectionTestUtils.setField(interceptor, "refillPerSecond", 1.0);
+        for (String user : List.of("doctor", "nurse")) {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new TestingAuthenticationToken(user, null, "ROLE_DOCTOR"));
+            interceptor.preHandle(new MockHttpServletRequest("POST", "/api/appointments"),
+                    new MockHttpServletResponse(), null);
+        }
+        long now = System.nanoTime();
+        
+        interceptor.evictIdleBuckets(now);
+        assertThat(interceptor.bucketCount()).isEqualTo(2);
+        
+        interceptor.evictIdleBuckets(now + TimeUnit.SECONDS.toNanos(3));
+        assertThat(interceptor.bucketCount()).isZero();
+    }
+    
+    @Test
+    void shedsWhileThreadsQueueOnAnyShardAndRecoversOnceTheyAreServed() throws Exception {
+        HikariDataSource shard0 = pool(1);
+        HikariDataSource shard1 = pool(1);
+        AdmissionControlInterceptor interceptor = interceptor(new ShardRoutingDataSource(List.of(shard0, shard1)), 1, 200);
+        
+        ExecutorService waiters = Executors.newFixedThreadPool(2);
+        try (Connection held = shard1.getConnection()) {
+            CountDownLatch served = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                waiters.submit(() -> {
+                    try (Connection connection = shard1.getConnection()) {
+                        served.countDown();
+                    }
+                    return null;
+                });
+            }
+            await().atMost(5, TimeUnit.SECONDS)
+                    .until(() -> shard1.getHikariPoolMXBean().getThreadsAwaitingConnection() == 2);
+            
+            assertThatThrownBy(() -> handle(interceptor)).isInstanceOf(ServiceOverloadedException.class);
+        } finally {
+            waiters.shutdown();
+            assertThat(waiters.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        }
+        
+        // No decaying history: the next request after the backlog clears is admitted
+        handle(interceptor);
+    }
+    
+    @Test
+    void keepsP99LatencyOfAdmittedRequestsLowUnderOverload() throws Exception {
+        long uncontrolled = p99Millis(null);
+        long controlled = p99Millis(interceptor(pool(2), 2, 4));
+        
+        assertThat(controlled).isLessThan(uncontrolled / 2);
+    }
+    
+    // 32 clients send 10 requests each to a pool of 2 connections; a request holds its
+    // connection for 10 ms. Shed requests back off 5 ms and are not counted.
+    private long p99Millis(AdmissionControlInterceptor interceptor) throws Exception {
+        DataSource dataSource = interceptor != null ? pools.get(pools.size() - 1) : pool(2);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger shed = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(32);
+        for (int client = 0; client < 32; client++) {
+            clients.submit(() -> {
+                for (int request = 0; request < 10; request++) {
+                    long start = System.nanoTime();
+                    if (interceptor != null) {
+                        try {
+                            handle(interceptor);
+                        } catch (ServiceOverloadedException e) {
+                            shed.incrementAndGet();
+                            Thread.sleep(5);
+                            continue;
+                        }
+                    }
+                    try (Connection connection = dataSource.getConnection()) {
+                        Thread.sleep(10);
+                    } finally {
+                        if (interceptor != null) {
+                            interceptor.afterCompletion(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                                    null, null);
+                        }
+                    }
+                    latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                return null;
+            });
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        
+        if (interceptor != null) {
+            assertThat(shed).hasPositiveValue();
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    }
+    
+    private HikariDataSource pool(int size) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());
+        dataSource.setMaximumPoolSize(size);
+        dataSource.setMinimumIdle(size);
+        pools.add(dataSource);
+        return dataSource;
+    }
+    
+    private static AdmissionControlInterceptor interceptor(DataSource dataSource, int maxPendingConnections,
+                                                           int maxInFlight) {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(new SimpleMeterRegistry(), dataSource);
+        ReflectionTestUtils.setField(interceptor, "maxPendingConnections", maxPendingConnections);
+        ReflectionTestUtils.setField(interceptor, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(interceptor, "sheddingRetryAfterSeconds", 1L);
+        return interceptor;
+    }
+    
+    @RestController
+    static class WriteController {
+        
+        @RequestMapping("/write")
+        String write() {
+            return "ok";
+        }
+    }
+    
+    private static void handle(AdmissionControlInterceptor interceptor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/appointments/1");
+        interceptor.preHandle(request, new MockHttpServletResponse(), null);
+    }
+}
@@ -0,0 +1,74 @@
+package com.hospital.scheduling.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Time is passed in, so every assertion is exact
+class TokenBucketTest {
+    
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = 1_000 * SECOND;
+    
+    @Test
+    void burstOfCapacityThenWaitForOneInterval() {
+        TokenBucket bucket = new TokenBucket(3, 1);
+        
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isEqualTo(SECOND);
+        assertThat(bucket.tryAcquire(START + SECOND / 4)).isEqualTo(SECOND * 3 / 4);
+    }
+    
+    @Test
+    void refillsOneTokenPerIntervalUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 2);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(START);
+        }
+        
+        // One token after half a second, and the one after that half a second later
+        assertThat(bucket.tryAcquire(START + SECOND / 2)).isZero();
+        assertThat(bucket.tryAcquire(START + SECOND / 2)).isEqualTo(SECOND / 2);
+        assertThat(bucket.isFull(START + SECOND / 2)).isFalse();
+        
+        // Idle long enough to be full again, but never above capacity
+        long later = START + 10 * SECOND;
+        assertThat(bucket.isFull(later)).isTrue();
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire(later)).isZero();
+        }
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+    
+    @Test
+    void concurrentAcquiresNeverHandOutMoreThanCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            threads.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1_000; i++) {
+                    if (bucket.tryAcquire(START) == 0) {
+                        acquired.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        threads.shutdown();
+        assertThat(threads.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        
+        assertThat(acquired).hasValue(100);
+    }
+}
@@ -0,0 +1,72 @@
+package com.hospital.scheduling.service;
+
+import com.hospital.scheduling.dto.AppointmentDTO;
+import com.hospital.scheduling.dto.CreateAppointmentRequest;
+import com.hospital.scheduling.event.AppointmentEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "management.tracing.enabled=false")
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private AppointmentService appointmentService;
+    
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+    
+    @Test
+    void rolledBackCreateDoesNotPublish() {
+        CreateAppointmentRequest request = request();
+        
+        assertThatThrownBy(() -> idempotencyService.execute("test", "rolled-back", 0, request, () -> {
+            appointmentService.createAppointment(request);
+            throw new IllegalStateException("lost the race");
+        })).isInstanceOf(IllegalStateException.class);
+        
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(AppointmentEvent.class));
+    }
+    
+    @Test
+    void committedCreatePublishesOnceAndReplayDoesNotPublishAgain() {
+        CreateAppointmentRequest request = request();
+        
+        AppointmentDTO first = idempotencyService.execute("test", "committed", 0, request,
+                () -> appointmentService.createAppointment(request)).body();
+        IdempotencyService.IdempotentResult replay = idempotencyService.execute("test", "committed", 0, request,
+                () -> appointmentService.createAppointment(request));
+        
+        assertThat(replay.replayed()).isTrue();
+        assertThat(replay.body().getId()).isEqualTo(first.getId());
+        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), anyString(), any(AppointmentEvent.class));
+    }
+    
+    private static CreateAppointmentRequest request() {
+        CreateAppointmentRequest request = new CreateAppointmentRequest();
+        request.setPatientId(1L);
+        request.setPatientName("Paciente Teste");
+        request.setPatientEmail("paciente@example.com");
+        request.setDoctorId(2L);
+        request.setDoctorName("Dr. Teste");
+        request.setAppointmentDate(LocalDateTime.now().plusDays(30));
+        return request;
+    }
+}
@@ -0,0 +1,147 @@
+package com.hospital.scheduling.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.scheduling.datasource.ShardRouter;
+import com.hospital.scheduling.dto.AppointmentDTO;
+import com.hospital.scheduling.dto.CreateAppointmentRequest;
+import com.hospital.scheduling.event.AppointmentEvent;
+import com.hospital.scheduling.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Two in-memory H2 databases as shards: even doctors on shard 0, odd doctors on shard 1
+@SpringBootTest(properties = {
+        "management.tracing.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:shard-0;DB_CLOSE_DELAY=-1",
+        "scheduling.sharding.enabled=true",
+        "scheduling.sharding.additional-urls=" + ShardedAppointmentServiceTest.SHARD_1_URL
+})
+@ActiveProfiles("test")
+class ShardedAppointmentServiceTest {
+    
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1";
+    
+    private static final AtomicLong PATIENTS = new AtomicLong(1000);
+    
+    @Autowired
+    private AppointmentService appointmentService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+    
+    @Test
+    void appointmentsAreStoredOnTheirDoctorsShardAndFoundByIdThere() {
+        long patientId = PATIENTS.incrementAndGet();
+        AppointmentDTO even = appointmentService.createAppointment(request(patientId, 2L, 1, "even"));
+        AppointmentDTO odd = appointmentService.createAppointment(request(patientId, 3L, 2, "odd"));
+        
+        assertThat(shardRouter.shardOfId(even.getId())).isZero();
+        assertThat(shardRouter.shardOfId(odd.getId())).isEqualTo(1);
+        assertThat(new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "sa", "")).queryForList(
+                "SELECT notes FROM appointments WHERE patient_id = ?", String.class, patientId))
+                .containsExactly("odd");
+        assertThat(appointmentService.getAppointment(odd.getId()).getNotes()).isEqualTo("odd");
+        assertThat(appointmentService.getAppointmentFields(odd.getId(), Set.of("notes")))
+                .containsExactly(Map.entry("notes", "odd"));
+        AppointmentService.VersionedFields versioned = appointmentService.getVersionedAppointmentFields(
+                odd.getId(), Set.of("notes"));
+        assertThat(versioned.version()).isEqualTo(odd.getVersion());
+        assertThat(versioned.fields()).containsExactly(Map.entry("notes", "odd"));
+    }
+    
+    @Test
+    void patientListsAreMergedAcrossShardsInDateOrder() {
+        long patientId = PATIENTS.incrementAndGet();
+        appointmentService.createAppointment(request(patientId, 3L, 5, "day 5"));
+        appointmentService.createAppointment(request(patientId, 2L, 1, "day 1"));
+        appointmentService.createAppointment(request(patientId, 2L, 4, "day 4"));
+        appointmentService.createAppointment(request(patientId, 3L, 2, "day 2"));
+        appointmentService.createAppointment(request(patientId, 3L, 3, "day 3"));
+        List<String> inDateOrder = List.of("day 1", "day 2", "day 3", "day 4", "day 5");
+        
+        assertThat(appointmentService.getPatientAppointments(patientId))
+                .extracting(AppointmentDTO::getNotes)
+                .containsExactlyElementsOf(inDateOrder);
+        assertThat(appointmentService.getFuturePatientAppointments(patientId))
+                .extracting(AppointmentDTO::getNotes)
+                .containsExactlyElementsOf(inDateOrder);
+        
+        // The sort keys are not part of the selection, so they must not leak into the rows
+        List<Map<String, Object>> rows = appointmentService.getPatientAppointmentFields(patientId, Set.of("notes"));
+        assertThat(rows).extracting(row -> row.get("notes")).containsExactlyElementsOf(inDateOrder);
+        assertThat(rows).allSatisfy(row -> assertThat(row).containsOnlyKeys("notes"));
+        
+        assertThat(appointmentService.getFuturePatientAppointmentFields(patientId, Set.of("notes", "doctorId")))
+                .extracting(row -> row.get("notes"))
+                .containsExactlyElementsOf(inDateOrder);
+    }
+    
+    @Test
+    void createThatLosesTheIdempotencyRaceOnAnotherShardLeavesNothingBehind() {
+        long patientId = PATIENTS.incrementAndGet();
+        CreateAppointmentRequest request = request(patientId, 3L, 1, "once");
+        int shard = appointmentService.shardFor(request);
+        // A second instance: its own cache and in-flight map, the same databases
+        IdempotencyService otherInstance = new IdempotencyService(
+                idempotencyRecordRepository, shardRouter, objectMapper, 10);
+        
+        // The other instance gets the same key through and commits while this one is mid-action
+        IdempotencyService.IdempotentResult result = idempotencyService.execute("test", "race", shard, request, () -> {
+            AppointmentDTO lost = appointmentService.createAppointment(request);
+            CompletableFuture.runAsync(() -> otherInstance.execute("test", "race", shard, request,
+                    () -> appointmentService.createAppointment(request))).join();
+            return lost;
+        });
+        
+        assertThat(shard).isEqualTo(1);
+        assertThat(result.replayed()).isTrue();
+        assertThat(new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "sa", "")).queryForList(
+                "SELECT id FROM appointments WHERE patient_id = ?", Long.class, patientId))
+                .containsExactly(result.body().getId());
+        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), anyString(),
+                argThat((AppointmentEvent event) -> event.getPatientId() == patientId));
+    }
+    
+    private static CreateAppointmentRequest request(long patientId, long doctorId, int daysAhead, String notes) {
+        CreateAppointmentRequest request = new CreateAppointmentRequest();
+        request.setPatientId(patientId);
+        request.setPatientName("Paciente Teste");
+        request.setPatientEmail("paciente@example.com");
+        request.setDoctorId(doctorId);
+        request.setDoctorName("Dr. Teste");
+        request.setAppointmentDate(LocalDateTime.now().plusDays(daysAhead));
+        request.setNotes(notes);
+        return request;
+    }
+}
@@ -0,0 +1,120 @@
+#!/bin/bash
+
+# Measures cold start of one service: time until the first request is served and the
+# resident memory at that point.
+#
+# Usage: ./startup-benchmark.sh <scheduling|history|notification> [jvm|cds|native] [runs]
+#
+#   jvm     target/<service>-1.0.0.jar           (mvn package)
+#   cds     AOT build with the CDS archive        (mvn -Pcds package)
+#   native  GraalVM native image                  (mvn -Pnative package)
+#
+# The services start against in-memory H2 by default so no infrastructure is needed;
+# set APP_ARGS to run against the real databases instead. The notification service has no
+# HTTP endpoint, its first served request is the "Started" log line.
+
+SERVICE=$1
+MODE=${2:-jvm}
+RUNS=${3:-5}
+VERSION=1.0.0
+TIMEOUT_SECONDS=120
+
+case "$SERVICE" in
+    scheduling)
+        URL="http://localhost:8080/api/appointments"
+        CURL_ARGS=(-u doctor:doctor123)
+        DEFAULT_ARGS="--spring.profiles.active=test"
+        ;;
+    history)
+        URL="http://localhost:8082/actuator/health"
+        CURL_ARGS=()
+        DEFAULT_ARGS="--spring.datasource.url=jdbc:h2:mem:bench --spring.datasource.driver-class-name=org.h2.Driver --spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect --spring.jpa.hibernate.ddl-auto=create --spring.sql.init.mode=never"
+        ;;
+    notification)
+        URL=""
+        DEFAULT_ARGS=""
+        ;;
+    *)
+        echo "Usage: $0 <scheduling|history|notification> [jvm|cds|native] [runs]"
+        exit 1
+        ;;
+esac
+
+DIR="$(cd "$(dirname "$0")" && pwd)/$SERVICE-service"
+read -r -a ARGS <<< "${APP_ARGS-$DEFAULT_ARGS}"
+
+case "$MODE" in
+    jvm)
+        ARTIFACT="$DIR/target/$SERVICE-service-$VERSION.jar"
+        CMD=(java -jar "$ARTIFACT")
+        ;;
+    cds)
+        ARTIFACT="$DIR/target/cds/application.jsa"
+        CMD=(java -XX:SharedArchiveFile="$ARTIFACT" -Dspring.aot.enabled=true
+             -jar "$DIR/target/cds/$SERVICE-service-$VERSION-cds.jar")
+        ;;
+    native)
+        ARTIFACT="$DIR/target/$SERVICE-service"
+        CMD=("$ARTIFACT")
+        ;;
+    *)
+        echo "❌ Unknown mode: $MODE (expected jvm, cds or native)"
+        exit 1
+        ;;
+esac
+
+if [ ! -e "$ARTIFACT" ]; then
+    echo "❌ $ARTIFACT not found, build it first"
+    exit 1
+fi
+
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+
+echo "⏱️  $SERVICE-service ($MODE), $RUNS runs"
+
+TOTAL_MS=0
+TOTAL_RSS=0
+for run in $(seq 1 "$RUNS"); do
+    START=$(date +%s%N)
+    "${CMD[@]}" "${ARGS[@]}" > "$LOG" 2>&1 &
+    PID=$!
+
+    READY=false
+    DEADLINE=$((SECONDS + TIMEOUT_SECONDS))
+    while [ $SECONDS -lt $DEADLINE ] && kill -0 $PID 2> /dev/null; do
+        if [ -n "$URL" ]; then
+            # Any response counts, health may be DOWN while the broker is unreachable
+            if [ "$(curl -s -o /dev/null -w '%{http_code}' "${CURL_ARGS[@]}" "$URL")" != "000" ]; then
+                READY=true
+                break
+            fi
+        elif grep -q "Started NotificationServiceApplication" "$LOG"; then
+            READY=true
+            break
+        fi
+        sleep 0.01
+    done
+    ELAPSED_MS=$(( ($(date +%s%N) - START) / 1000000 ))
+
+    if [ "$READY" != true ]; then
+        echo "❌ Run $run: service did not become ready, last log lines:"
+        tail -20 "$LOG"
+        kill $PID 2> /dev/null
+        wait $PID 2> /dev/null
+        exit 1
+    fi
+
+    RSS_KB=$(awk '/VmRSS/ { print $2 }' /proc/$PID/status)
+    kill $PID
+    wait $PID 2> /dev/null
+
+    echo "   Run $run: first request after ${ELAPSED_MS} ms, RSS $((RSS_KB / 1024)) MiB"
+    TOTAL_MS=$((TOTAL_MS + ELAPSED_MS))
+    TOTAL_RSS=$((TOTAL_RSS + RSS_KB))
+
+    # Let the port close before the next run
+    sleep 2
+done
+
+echo "✅ Average: first request after $((TOTAL_MS / RUNS)) ms, RSS $((TOTAL_RSS / RUNS / 1024)) MiB"
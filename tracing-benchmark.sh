@@ -0,0 +1,77 @@
+#!/bin/bash
+
+# Measures what tracing costs per request on the scheduling service: the same read requests with
+# tracing off and at sampling probabilities 0, 0.1 (the default) and 1. Sampled requests record
+# the REST span and the JDBC connection and query spans, and hand them to the OTLP exporter.
+#
+# Usage: ./tracing-benchmark.sh [requests]
+#
+# Builds nothing: run mvn package in scheduling-service first. Each variant starts the service
+# on in-memory H2 with the prod logging setup, warms it up, then sends the requests over one
+# keep-alive connection. Without a collector on localhost:4318 the exporter still builds and
+# sends each batch, and the failed export stays off the request thread. Every request also pays
+# the BCrypt check of HTTP Basic, so compare the difference between the variants rather than the
+# absolute times.
+
+REQUESTS=${1:-2000}
+WARMUP=500
+JAR="$(cd "$(dirname "$0")" && pwd)/scheduling-service/target/scheduling-service-1.0.0.jar"
+URL="http://localhost:8080/api/appointments/patient/1"
+AUTH=(-u doctor:doctor123)
+TIMEOUT_SECONDS=120
+# prod after test: keeps the H2 datasource but takes prod's logging and SQL settings; H2 is told
+# to ignore the PostgreSQL driver properties prod sets
+COMMON_ARGS=(--spring.profiles.active=test,prod "--spring.datasource.url=jdbc:h2:mem:testdb;IGNORE_UNKNOWN_SETTINGS=TRUE"
+             --scheduling.rate-limit.capacity=1000000 --scheduling.rate-limit.refill-per-second=1000000)
+
+if [ ! -f "$JAR" ]; then
+    echo "❌ $JAR not found, build it first"
+    exit 1
+fi
+
+LOG=$(mktemp)
+CONFIG=$(mktemp)
+trap 'rm -f "$LOG" "$CONFIG"' EXIT
+
+# One curl process, one connection: url and output repeated once per request
+requests() {
+    : > "$CONFIG"
+    for i in $(seq 1 "$1"); do
+        printf 'url = "%s"\noutput = "/dev/null"\n' "$URL" >> "$CONFIG"
+    done
+    curl -s "${AUTH[@]}" -K "$CONFIG" -w '%{time_total}\n'
+}
+
+run() {
+    local label=$1
+    shift
+    java -jar "$JAR" "${COMMON_ARGS[@]}" "$@" > "$LOG" 2>&1 &
+    local pid=$!
+
+    local deadline=$((SECONDS + TIMEOUT_SECONDS))
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "${AUTH[@]}" "$URL")" = "200" ]; do
+        if [ $SECONDS -ge $deadline ] || ! kill -0 $pid 2> /dev/null; then
+            echo "❌ $label: service did not become ready, last log lines:"
+            tail -20 "$LOG"
+            kill $pid 2> /dev/null
+            exit 1
+        fi
+        sleep 0.2
+    done
+
+    requests "$WARMUP" > /dev/null
+    requests "$REQUESTS" | sort -n | awk -v label="$label" '
+        { t[NR] = $1 * 1000; sum += $1 * 1000 }
+        END { printf "   %-8s %7.3f ms avg  %7.3f ms p50  %7.3f ms p99", label, sum / NR, t[int(NR * 0.5)], t[int(NR * 0.99)] }'
+    echo
+
+    kill $pid
+    wait $pid 2> /dev/null
+    sleep 2
+}
+
+echo "⏱️  GET $URL, $REQUESTS requests per variant"
+run "off" --management.tracing.enabled=false
+run "p=0" --management.tracing.sampling.probability=0
+run "p=0.1" --management.tracing.sampling.probability=0.1
+run "p=1" --management.tracing.sampling.probability=1.0